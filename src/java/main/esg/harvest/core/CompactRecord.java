@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import esg.harvest.query.impl.solr.SolrXmlPars;
+import esg.harvest.utils.ValueCache;
+
+/**
+ * Memory-efficient implementation of the {@link Record} interface, for crawls producing large numbers of records
+ * (e.g. THREDDS file records).
+ * Field (name, value) pairs are stored in two flat arrays, in insertion order: the field names as codes 
+ * of the {@link FieldNames} table, and the field values.
+ * The field map sorted on names (as returned by {@link RecordImpl}) is only built by {@link #getFields()}, 
+ * i.e. when the record is serialized.
+ * Field names that do not fit in the {@link FieldNames} table are stored by each record.
+ * Records created with a {@link ValueCache} store the cached instance of each field value.
+ */
+public class CompactRecord implements Record, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final static int INITIAL_CAPACITY = 8;
+	
+	private final static int NO_CODE = Integer.MIN_VALUE;
+	
+	/**
+	 * The record unique identifier.
+	 */
+	private String id;
+	
+	/**
+	 * Number of (name, value) pairs.
+	 */
+	private transient int size = 0;
+	
+	/**
+	 * Field name of each pair: either a {@link FieldNames} code (>=0), 
+	 * or the index i of the name in {@link #names} encoded as -(i+1).
+	 */
+	private transient int[] codes = new int[INITIAL_CAPACITY];
+	
+	/**
+	 * Field value of each pair.
+	 */
+	private transient String[] values = new String[INITIAL_CAPACITY];
+	
+	/**
+	 * Field names not in the {@link FieldNames} table (null if none).
+	 */
+	private transient List<String> names;
+	
+	/**
+	 * Cache of the values shared with other records (null if values are not shared).
+	 */
+	private final transient ValueCache cache;
+	
+	/**
+	 * Constructor for yet unknown record identifier.
+	 */
+	public CompactRecord() {
+		this(null, null);
+	}
+	
+	/**
+	 * Constructor for known unique record identifier.
+	 * @param id
+	 */
+	public CompactRecord(final String id) {
+		this(id, null);
+	}
+	
+	/**
+	 * Constructor for a record sharing its field values with other records.
+	 * @param id : the record identifier (may be null if not yet known)
+	 * @param cache : the cache of shared values (may be null)
+	 */
+	public CompactRecord(final String id, final ValueCache cache) {
+		this.id = id;
+		this.cache = cache;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getId() {
+		return id;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setId(final String id) {
+		this.id = id;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Note that this implementation does not add pairs where the key or the value is null or blank.
+	 */
+	public void addField(final String name, final String value) {
+		
+		if (hasText(name) && hasText(value)) {
+			int code = FieldNames.getCode(name);
+			if (code<0) {
+				if (names==null) names = new ArrayList<String>(1);
+				int index = names.indexOf(name);
+				if (index<0) {
+					names.add(name);
+					index = names.size()-1;
+				}
+				code = -(index+1);
+			}
+			
+			if (size==codes.length) {
+				final int capacity = size + (size>>1) + 1;
+				final int[] _codes = new int[capacity];
+				System.arraycopy(codes, 0, _codes, 0, size);
+				codes = _codes;
+				final String[] _values = new String[capacity];
+				System.arraycopy(values, 0, _values, 0, size);
+				values = _values;
+			}
+			codes[size] = code;
+			values[size] = cache!=null ? cache.get(value) : value;
+			size++;
+		}
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Note that this implementation builds a new map at each invocation, ordered on keys.
+	 */
+	public Map<String, List<String>> getFields() {
+		
+		final Map<String, List<String>> fields = new TreeMap<String, List<String>>();
+		for (int i=0; i<size; i++) {
+			final String name = getName(codes[i]);
+			List<String> _values = fields.get(name);
+			if (_values==null) {
+				_values = new ArrayList<String>(1);
+				fields.put(name, _values);
+			}
+			_values.add(values[i]);
+		}
+		return Collections.unmodifiableMap(fields);
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getField(final String name) {
+		
+		final int code = this.findCode(name);
+		for (int i=0; i<size && code!=NO_CODE; i++) {
+			if (codes[i]==code) return values[i];
+		}
+		return null;
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getFieldsLength(final int overhead) {
+		
+		long length = 0;
+		for (int i=0; i<size; i++) {
+			length += overhead + getName(codes[i]).length() + values[i].length();
+		}
+		return length;
+		
+	}
+	
+	/**
+	 * This implementation retrieves the record version for the same named field.
+	 */
+	public long getVersion() {
+		
+		final String version = getField(SolrXmlPars.FIELD_VERSION);
+		if (hasText(version)) {
+			try {
+				return Long.parseLong(version);
+			} catch(NumberFormatException e) {}
+		}
+		return 0; // no version available
+		
+	}
+	
+	/**
+	 * Method to return the code of a field name within this record, without interning the name.
+	 * @param name
+	 * @return the code, or {@link #NO_CODE} if the name is not used by this record
+	 */
+	private int findCode(final String name) {
+		
+		final int code = FieldNames.findCode(name);
+		if (code>=0) return code;
+		final int index = names!=null ? names.indexOf(name) : -1;
+		return index>=0 ? -(index+1) : NO_CODE;
+		
+	}
+	
+	private String getName(final int code) {
+		return code>=0 ? FieldNames.getName(code) : names.get(-code-1);
+	}
+	
+	private static boolean hasText(final String s) {
+		return s!=null && s.trim().length()>0;
+	}
+	
+	/**
+	 * Method to serialize the field names, rather than their codes which are only valid within this process.
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+		
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int i=0; i<size; i++) {
+			out.writeUTF(getName(codes[i]));
+			out.writeObject(values[i]);
+		}
+		
+	}
+	
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		
+		in.defaultReadObject();
+		final int _size = in.readInt();
+		codes = new int[Math.max(_size, 1)];
+		values = new String[Math.max(_size, 1)];
+		for (int i=0; i<_size; i++) {
+			addField(in.readUTF(), (String)in.readObject());
+		}
+		
+	}
+	
+	public String toString() {
+		
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Record ID="+id);
+		for (final Map.Entry<String, List<String>> field : getFields().entrySet()) {
+			sb.append(" [field name="+field.getKey()+" values="+field.getValue()+"] ");
+		}
+		return sb.toString();
+		
+	}
+
+}
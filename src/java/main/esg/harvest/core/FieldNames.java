@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Process-wide table of interned record field names, which lets records store each field name as a small integer code.
+ * The table is pre-loaded with the {@link SolrXmlPars} field vocabulary (codes 0 to n-1, in declaration order);
+ * other names are added on first use, up to a maximum table size, after which {@link #getCode(String)} returns -1
+ * and the name must be stored by the caller.
+ * This class is thread-safe.
+ */
+public final class FieldNames {
+	
+	/**
+	 * Maximum number of names in the table, which bounds the table memory if records carry arbitrary field names
+	 * (e.g. verbatim THREDDS properties).
+	 */
+	public final static int MAX_SIZE = 1024;
+	
+	private final static String[] VOCABULARY = new String[] {
+		SolrXmlPars.FIELD_ID, SolrXmlPars.FIELD_PARENT_ID, SolrXmlPars.FIELD_VERSION, SolrXmlPars.FIELD_TITLE, 
+		SolrXmlPars.FIELD_NAME, SolrXmlPars.FIELD_DESCRIPTION, SolrXmlPars.FIELD_TYPE, SolrXmlPars.FIELD_URL, 
+		SolrXmlPars.FIELD_SERVICE, SolrXmlPars.FIELD_SERVICE_TYPE, SolrXmlPars.FIELD_XLINK, SolrXmlPars.FIELD_XREF, 
+		SolrXmlPars.FIELD_TIMESTAMP, SolrXmlPars.FIELD_METADATA_FORMAT, SolrXmlPars.FIELD_METADATA_URL, 
+		SolrXmlPars.FIELD_METADATA_FILE_NAME, SolrXmlPars.FIELD_SIZE, SolrXmlPars.FIELD_PROJECT, SolrXmlPars.FIELD_INSTRUMENT, 
+		SolrXmlPars.FIELD_VARIABLE, SolrXmlPars.FIELD_CF_VARIABLE, SolrXmlPars.FIELD_GCMD_VARIABLE, 
+		SolrXmlPars.FIELD_DATETIME_START, SolrXmlPars.FIELD_DATETIME_STOP, SolrXmlPars.FIELD_NORTH, SolrXmlPars.FIELD_SOUTH, 
+		SolrXmlPars.FIELD_EAST, SolrXmlPars.FIELD_WEST, SolrXmlPars.FIELD_DATA_FORMAT, SolrXmlPars.FIELD_FILE_NAME
+	};
+	
+	private final static Map<String, Integer> CODES = new ConcurrentHashMap<String, Integer>();
+	
+	/**
+	 * Names indexed by code: the array is replaced (never modified) when a name is added,
+	 * so that it can be read without locking.
+	 */
+	private static volatile String[] names = new String[0];
+	
+	static {
+		for (final String name : VOCABULARY) getCode(name);
+	}
+	
+	private FieldNames() {}
+	
+	/**
+	 * Method to return the code of a field name, adding the name to the table if necessary.
+	 * @param name
+	 * @return the code of the name, or -1 if the name is not in the table and the table is full
+	 */
+	public static int getCode(final String name) {
+		
+		final Integer code = CODES.get(name);
+		if (code!=null) return code.intValue();
+		
+		synchronized (CODES) {
+			final Integer _code = CODES.get(name);
+			if (_code!=null) return _code.intValue();
+			if (names.length>=MAX_SIZE) return -1;
+			
+			final int next = names.length;
+			final String[] _names = new String[next+1];
+			System.arraycopy(names, 0, _names, 0, next);
+			_names[next] = name.intern();
+			names = _names; // publish the name before its code
+			CODES.put(_names[next], next);
+			return next;
+		}
+		
+	}
+	
+	/**
+	 * Method to return the code of a field name without adding it to the table.
+	 * @param name
+	 * @return the code of the name, or -1 if the name is not in the table
+	 */
+	public static int findCode(final String name) {
+		final Integer code = CODES.get(name);
+		return code!=null ? code.intValue() : -1;
+	}
+	
+	/**
+	 * Method to return the field name for a code returned by {@link #getCode(String)}.
+	 * @param code
+	 * @return
+	 */
+	public static String getName(final int code) {
+		return names[code];
+	}
+	
+	/**
+	 * @return the current number of names in the table
+	 */
+	public static int size() {
+		return names.length;
+	}
+
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.api;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import esg.harvest.core.CompactRecord;
+import esg.harvest.core.Record;
+import esg.harvest.utils.ValueCache;
+
+/**
+ * Class holding the state of a single crawl of a metadata repository, which is passed to the crawler
+ * and to the parsers and handlers it uses, so that several crawls can run concurrently in the same process:
+ * the source URI and options of the crawl, a unique crawl identifier, and counters updated while crawling.
+ * Records should be created through {@link #newRecord(String)}, so that the values repeated across
+ * the records of the crawl are shared rather than copied.
+ * This class is thread-safe.
+ */
+public class CrawlContext {
+	
+	private final static AtomicLong SEQUENCE = new AtomicLong();
+	
+	private final String id;
+	
+	private final URI uri;
+	
+	private final boolean recursive;
+	
+	private final boolean incremental;
+	
+	private final long startTime = System.currentTimeMillis();
+	
+	/**
+	 * Number of records produced by the crawl.
+	 */
+	private final AtomicInteger records = new AtomicInteger();
+	
+	/**
+	 * Number of documents (catalogs, pages...) parsed by the crawl.
+	 */
+	private final AtomicInteger documents = new AtomicInteger();
+	
+	/**
+	 * Values shared by the records of the crawl.
+	 */
+	private final ValueCache values = new ValueCache(ValueCache.DEFAULT_SIZE);
+	
+	/**
+	 * Constructor.
+	 * @param uri : the starting URI of the metadata repository
+	 * @param recursive : true to recursively crawl the locations referenced by the starting location
+	 * @param incremental : true to skip the content that has not changed since the previous crawl 
+	 *        (if supported by the crawler), false to crawl all content
+	 */
+	public CrawlContext(final URI uri, final boolean recursive, final boolean incremental) {
+		this.id = "crawl-"+SEQUENCE.incrementAndGet();
+		this.uri = uri;
+		this.recursive = recursive;
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * @return the identifier of the crawl, unique within the process
+	 */
+	public String getId() {
+		return id;
+	}
+	
+	/**
+	 * @return the starting URI of the metadata repository (i.e. the source of all records produced by the crawl)
+	 */
+	public URI getUri() {
+		return uri;
+	}
+	
+	public boolean isRecursive() {
+		return recursive;
+	}
+	
+	public boolean isIncremental() {
+		return incremental;
+	}
+	
+	/**
+	 * @return the time the crawl started, in milliseconds
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+	
+	/**
+	 * Method to count a record produced by the crawl.
+	 */
+	public void addRecord() {
+		records.incrementAndGet();
+	}
+	
+	public int getRecords() {
+		return records.get();
+	}
+	
+	/**
+	 * Method to count a document parsed by the crawl.
+	 */
+	public void addDocument() {
+		documents.incrementAndGet();
+	}
+	
+	public int getDocuments() {
+		return documents.get();
+	}
+	
+	/**
+	 * Method to create a new record for this crawl, which shares its repeated field values with the other records.
+	 * @param id : the record identifier, or null if not yet known
+	 * @return
+	 */
+	public Record newRecord(final String id) {
+		return new CompactRecord(id, values);
+	}
+	
+	/**
+	 * @return the number of field values shared with a previous record of this crawl
+	 */
+	public long getSharedValues() {
+		return values.getHits();
+	}
+	
+	@Override
+	public String toString() {
+		return id+" uri="+uri+" recursive="+recursive+" incremental="+incremental;
+	}
+
+}
@@ -1,38 +1,48 @@
-package esg.harvest.publish.api;
-
-import java.util.List;
-
-
-/**
- * High level API for publishing and unpublishing metadata into the search engine storage.
- * @author luca.cinquini
- *
- */
-public interface PublishingService {
-
-	/**
-	 * Method to publish metadata from a remote metadata repository.
-	 * @param uri : the location of the remote metadata repository.
-	 * @param recursive : true to recursively crawl the remote metadata repository.
-	 * @param metadataRepositoryType : the metadata repository type.
-	 * @throws Exception
-	 */
-	void publish(String uri, boolean recursive, MetadataRepositoryType metadataRepositoryType) throws Exception;
-	
-	/**
-	 * Method to unpublish metadata from a remote metadata repository.
-	 * @param uri : the location of the remote metadata repository.
-	 * @param recursive : true to recursively crawl the remote metadata repository.
-	 * @param metadataRepositoryType : the metadata repository type.
-	 * @throws Exception
-	 */
-	void unpublish(String uri, boolean recursive, MetadataRepositoryType metadataRepositoryType) throws Exception;
-	
-	/**
-	 * Method to unpublish a list of records with known identifiers.
-	 * @param ids
-	 * @throws Exception
-	 */
-	void unpublish(List<String> ids) throws Exception;
-	
-}
+package esg.harvest.publish.api;
+
+import java.util.List;
+
+
+/**
+ * High level API for publishing and unpublishing metadata into the search engine storage.
+ * @author luca.cinquini
+ *
+ */
+public interface PublishingService {
+
+	/**
+	 * Method to publish metadata from a remote metadata repository.
+	 * @param uri : the location of the remote metadata repository.
+	 * @param recursive : true to recursively crawl the remote metadata repository.
+	 * @param metadataRepositoryType : the metadata repository type.
+	 * @return the number of records published
+	 * @throws Exception
+	 */
+	int publish(String uri, boolean recursive, MetadataRepositoryType metadataRepositoryType) throws Exception;
+	
+	/**
+	 * Method to unpublish metadata from a remote metadata repository.
+	 * @param uri : the location of the remote metadata repository.
+	 * @param recursive : true to recursively crawl the remote metadata repository.
+	 * @param metadataRepositoryType : the metadata repository type.
+	 * @return the number of records unpublished
+	 * @throws Exception
+	 */
+	int unpublish(String uri, boolean recursive, MetadataRepositoryType metadataRepositoryType) throws Exception;
+	
+	/**
+	 * Method to unpublish a list of records with known identifiers.
+	 * @param ids
+	 * @throws Exception
+	 */
+	void unpublish(List<String> ids) throws Exception;
+	
+	/**
+	 * Method to re-index the records spooled to a file after failing to be indexed.
+	 * @param spoolFile : path of the spool file
+	 * @return the number of records replayed
+	 * @throws Exception
+	 */
+	int replay(String spoolFile) throws Exception;
+	
+}
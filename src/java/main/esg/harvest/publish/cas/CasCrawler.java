@@ -1,75 +1,113 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.cas;
-
-import java.net.URI;
-import java.util.List;
-
-import org.jdom.Document;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.stereotype.Service;
-
-import esg.harvest.core.Record;
-import esg.harvest.publish.api.MetadataRepositoryCrawler;
-import esg.harvest.publish.api.MetadataRepositoryType;
-import esg.harvest.publish.api.RecordProducer;
-import esg.harvest.publish.xml.MetadataHandler;
-import esg.harvest.utils.HttpClient;
-import esg.harvest.utils.XmlParser;
-
-/**
- * Class to harvest metadata from a remote CAS server.
- */
-@Service
-public class CasCrawler implements MetadataRepositoryCrawler {
-		
-	private final MetadataHandler metadataHandler;
-	
-	@Autowired
-	public CasCrawler(final @Qualifier("metadataHandlerCasRdfImpl") MetadataHandler metadataHandler) {
-		this.metadataHandler = metadataHandler;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	public void crawl(final URI uri, final boolean recursive, final RecordProducer callback) throws Exception {
-		
-		// parse XML document
-		final String xml = (new HttpClient()).doGet( uri.toURL() );
-		final XmlParser xmlParser = new XmlParser(false);
-		final Document doc = xmlParser.parseString(xml);
-		
-		// process XML
-		final List<Record> records = metadataHandler.parse(doc.getRootElement());
-		
-		// index records
-		for (final Record record : records) callback.notify(record);
-
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	public MetadataRepositoryType supports() {
-		return MetadataRepositoryType.CAS;
-	}
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.cas;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.MetadataRepositoryCrawler;
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.api.RecordProducer;
+import esg.harvest.publish.xml.MetadataHandler;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.XmlParser;
+
+/**
+ * Class to harvest metadata from a remote CAS server.
+ * The RDF document is streamed from the server one product at a time: each product element is handed to the
+ * {@link MetadataHandler} as a single-product document, and the resulting records are notified right away,
+ * so that documents with any number of products are harvested in constant memory.
+ */
+@Service
+public class CasCrawler implements MetadataRepositoryCrawler {
+		
+	private final MetadataHandler metadataHandler;
+	
+	/**
+	 * Client used to retrieve the remote metadata.
+	 */
+	private final HttpClient httpClient;
+	
+	private final Log LOG = LogFactory.getLog(this.getClass());
+	
+	@Autowired
+	public CasCrawler(final @Qualifier("metadataHandlerCasRdfImpl") MetadataHandler metadataHandler,
+	                  final HttpClient httpClient) {
+		this.metadataHandler = metadataHandler;
+		this.httpClient = httpClient;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void crawl(final CrawlContext context, final RecordProducer callback) throws Exception {
+		
+		// stream XML document
+		final XmlParser xmlParser = new XmlParser(false);
+		final InputStream in = httpClient.doGetStream( context.getUri().toURL() );
+		int products = 0;
+		try {
+			final XMLStreamReader reader = xmlParser.newStreamReader(in);
+			try {
+				
+				// <rdf:RDF xmlns:cas="urn:oodt:" xmlns:esg="urn:esg:" xmlns:rdf="http://www.w3.org/1999/02/22-rdf-syntax-ns#" ...>
+				while (reader.next()!=XMLStreamConstants.START_ELEMENT) continue;
+				final Element root = new Element(reader.getLocalName(), Namespace.getNamespace(reader.getPrefix()!=null ? reader.getPrefix() : "", reader.getNamespaceURI()));
+				
+				// <esg:he5 rdf:about="...">...</esg:he5>
+				while (reader.hasNext()) {
+					if (reader.next()!=XMLStreamConstants.START_ELEMENT) continue;
+					root.setContent(xmlParser.parseElement(reader));
+					
+					// process XML, and index records
+					for (final Record record : metadataHandler.parse(root, context)) callback.notify(record);
+					products++;
+				}
+				
+			} finally {
+				reader.close();
+			}
+		} finally {
+			in.close();
+		}
+		context.addDocument();
+		if (LOG.isInfoEnabled()) LOG.info("Harvested "+products+" CAS products from: "+context.getUri());
+
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MetadataRepositoryType supports() {
+		return MetadataRepositoryType.CAS;
+	}
+
+}
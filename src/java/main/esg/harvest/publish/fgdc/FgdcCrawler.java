@@ -1,113 +1,129 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.fgdc;
-
-import java.net.URI;
-import java.util.List;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.Namespace;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.stereotype.Service;
-
-import esg.harvest.core.Record;
-import esg.harvest.publish.api.MetadataRepositoryCrawler;
-import esg.harvest.publish.api.MetadataRepositoryType;
-import esg.harvest.publish.api.RecordProducer;
-import esg.harvest.publish.xml.MetadataHandler;
-import esg.harvest.utils.HttpClient;
-import esg.harvest.utils.XmlParser;
-
-/**
- * Implementation of {@link MetadataRepositoryCrawler} that acts as an FGDC Harvester to retrieve records from an FGDC document.
- */
-@Service
-public class FgdcCrawler implements MetadataRepositoryCrawler  {
-	
-	private final MetadataHandler metadataHandler;
-	
-	private final Log LOG = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-	public FgdcCrawler(final @Qualifier("metadataHandlerFgdcImpl") MetadataHandler metadataHandler) {
-		this.metadataHandler = metadataHandler;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	public void crawl(final URI uri, final boolean recursive, final RecordProducer callback) throws Exception {
-		//LOG.debug("FGDCCrawler.crawl");
-		//System.out.println("In FgdcCrawler crawl()");
-		// parse XML document
-		final String xml = (new HttpClient()).doGet( uri.toURL() );
-		final XmlParser xmlParser = new XmlParser(false);
-		final Document doc = xmlParser.parseString(xml);
-		// process XML
-		this.parseDocument(doc, callback);
-		
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	public MetadataRepositoryType supports() {
-		return MetadataRepositoryType.FGDC;
-	}
-	
-	/**
-	 * Method to parse a single FGDC document.
-	 * @param doc
-	 * @throws Exception
-	 */
-	private void parseDocument(final Document doc, final RecordProducer callback) throws Exception {
-		
-		//LOG.debug("FGDCCrawler.parseDocument");
-		
-		final Element metadataEl = doc.getRootElement();
-		
-		//This is the header tag called "metadata"
-		// <metadata>
-		this.parseRecord(metadataEl, callback);
-		
-	}
-	
-	/**
-	 * Method to parse a single FGDC record,
-	 * which contains embedded metadata of some specific format.
-	 * @param recordEl
-	 * @return
-	 */
-	private void parseRecord(final Element recordEl, final RecordProducer callback) throws Exception {
-		
-		//LOG.debug("FGDCCrawler.parseRecord");
-		
-		final List<Record> records = metadataHandler.parse( (Element)recordEl );
-		
-		// index resulting Solr records
-		for (final Record record : records) callback.notify(record);
-		
-	}
-	
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.fgdc;
+
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.MetadataRepositoryCrawler;
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.api.RecordProducer;
+import esg.harvest.publish.xml.MetadataHandler;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.XmlParser;
+
+/**
+ * Implementation of {@link MetadataRepositoryCrawler} that acts as an FGDC Harvester to retrieve records from an FGDC document.
+ */
+@Service
+public class FgdcCrawler implements MetadataRepositoryCrawler  {
+	
+	private final MetadataHandler metadataHandler;
+	
+	/**
+	 * Client used to retrieve the remote metadata.
+	 */
+	private final HttpClient httpClient;
+	
+	private final Log LOG = LogFactory.getLog(this.getClass());
+	
+	@Autowired
+	public FgdcCrawler(final @Qualifier("metadataHandlerFgdcImpl") MetadataHandler metadataHandler,
+	                   final HttpClient httpClient) {
+		this.metadataHandler = metadataHandler;
+		this.httpClient = httpClient;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void crawl(final CrawlContext context, final RecordProducer callback) throws Exception {
+		//LOG.debug("FGDCCrawler.crawl");
+		//System.out.println("In FgdcCrawler crawl()");
+		// parse XML document
+		final XmlParser xmlParser = new XmlParser(false);
+		final Document doc;
+		final InputStream in = httpClient.doGetStream( context.getUri().toURL() );
+		try {
+			doc = xmlParser.parseStream(in);
+		} finally {
+			in.close();
+		}
+		// process XML
+		context.addDocument();
+		this.parseDocument(doc, context, callback);
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MetadataRepositoryType supports() {
+		return MetadataRepositoryType.FGDC;
+	}
+	
+	/**
+	 * Method to parse a single FGDC document.
+	 * @param doc
+	 * @param context
+	 * @throws Exception
+	 */
+	private void parseDocument(final Document doc, final CrawlContext context, final RecordProducer callback) throws Exception {
+		
+		//LOG.debug("FGDCCrawler.parseDocument");
+		
+		final Element metadataEl = doc.getRootElement();
+		
+		//This is the header tag called "metadata"
+		// <metadata>
+		this.parseRecord(metadataEl, context, callback);
+		
+	}
+	
+	/**
+	 * Method to parse a single FGDC record,
+	 * which contains embedded metadata of some specific format.
+	 * @param recordEl
+	 * @param context
+	 * @return
+	 */
+	private void parseRecord(final Element recordEl, final CrawlContext context, final RecordProducer callback) throws Exception {
+		
+		//LOG.debug("FGDCCrawler.parseRecord");
+		
+		final List<Record> records = metadataHandler.parse( (Element)recordEl, context );
+		
+		// index resulting Solr records
+		for (final Record record : records) callback.notify(record);
+		
+	}
+	
+
+}
@@ -0,0 +1,391 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Implementation of {@link RecordConsumer} that decouples the record producer from a (slower) target consumer,
+ * such as a Solr indexer: records are placed on a bounded queue, and handed to the target consumer
+ * by a pool of worker threads, so that fetching and parsing metadata overlaps with writing the records.
+ * 
+ * When the queue is full, the record is handled according to the configured {@link Overflow} policy:
+ * by default the producer is slowed down (i.e. blocked) until the queue has room.
+ * When flushed, this consumer waits for all queued records to be processed, then flushes the target consumer,
+ * and finally reports the first error raised by the target consumer (which is also reported
+ * to the producer at the next invocation of {@link #consume(Record)}), or else reports the records 
+ * that were dropped or spilled since the last flush as an error, since they have not been processed
+ * (so that crawlers do not record the harvest as complete).
+ * When closed, this consumer is flushed (if records were consumed since the last flush) before its worker threads are stopped.
+ * The worker threads are started when the first record is consumed.
+ * 
+ * Note that the target consumer is invoked concurrently by all worker threads, and must therefore be thread-safe;
+ * each worker holds its own connection to the target system for the duration of the call.
+ */
+public class AsyncRecordConsumer implements RecordConsumer {
+	
+	private static final Log LOG = LogFactory.getLog(AsyncRecordConsumer.class);
+	
+	/**
+	 * Policy applied to the records consumed while the queue is full.
+	 */
+	public static enum Overflow {
+		
+		/**
+		 * Block the producer until the queue has room.
+		 */
+		BLOCK,
+		
+		/**
+		 * Discard the record.
+		 */
+		DROP,
+		
+		/**
+		 * Append the record to a {@link RecordSpool}, for later delivery.
+		 */
+		SPILL
+		
+	}
+	
+	/**
+	 * Number of spilled records appended to the spool as a single block.
+	 */
+	private final static int SPILL_BLOCK_SIZE = 100;
+	
+	/**
+	 * The consumer that processes the records.
+	 */
+	private final RecordConsumer consumer;
+	
+	/**
+	 * Name of the target consumer, used for logging.
+	 */
+	private final String name;
+	
+	/**
+	 * Records waiting to be processed.
+	 */
+	private final BlockingQueue<Record> queue;
+	
+	private final Thread[] workers;
+	
+	private final Overflow overflow;
+	
+	/**
+	 * Spool receiving the records that overflow the queue (SPILL policy only).
+	 */
+	private final RecordSpool spool;
+	
+	/**
+	 * Records waiting to be spilled (guarded by this instance's monitor).
+	 */
+	private final List<Record> spilled = new ArrayList<Record>();
+	
+	/**
+	 * Number of records dropped or spilled because the queue was full (guarded by this instance's monitor).
+	 */
+	private long overflows = 0;
+	
+	/**
+	 * Number of records queued or being processed by the workers (guarded by this instance's monitor).
+	 */
+	private int pending = 0;
+	
+	/**
+	 * First error raised by the target consumer since the last flush (guarded by this instance's monitor).
+	 */
+	private Exception error;
+	
+	/**
+	 * Flag set when records have been consumed since the last flush (guarded by this instance's monitor).
+	 */
+	private boolean unflushed = false;
+	
+	/**
+	 * Flag set once the worker threads are started (guarded by this instance's monitor).
+	 */
+	private boolean started = false;
+	
+	/**
+	 * Flag set once this consumer is closed (guarded by this instance's monitor).
+	 */
+	private boolean closed = false;
+	
+	/**
+	 * Constructor for a consumer whose worker threads block the producer while the queue is full.
+	 * @param consumer : the target consumer
+	 * @param queueSize : the maximum number of records waiting to be processed
+	 * @param numberOfWorkers : the number of threads invoking the target consumer
+	 */
+	public AsyncRecordConsumer(final RecordConsumer consumer, final int queueSize, final int numberOfWorkers) {
+		this(consumer, queueSize, numberOfWorkers, Overflow.BLOCK, null);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param consumer : the target consumer
+	 * @param queueSize : the maximum number of records waiting to be processed
+	 * @param numberOfWorkers : the number of threads invoking the target consumer
+	 * @param overflow : the policy applied to the records consumed while the queue is full
+	 * @param spool : the spool receiving the records that overflow the queue (required by the SPILL policy only)
+	 */
+	public AsyncRecordConsumer(final RecordConsumer consumer, final int queueSize, final int numberOfWorkers,
+			                   final Overflow overflow, final RecordSpool spool) {
+		
+		Assert.isTrue(queueSize>0, "The queue size must be positive");
+		Assert.isTrue(numberOfWorkers>0, "The number of workers must be positive");
+		Assert.isTrue(overflow!=Overflow.SPILL || (spool!=null && spool.isEnabled()), "The SPILL overflow policy requires a record spool");
+		this.consumer = consumer;
+		this.name = consumer.getClass().getName();
+		this.queue = new ArrayBlockingQueue<Record>(queueSize);
+		this.overflow = overflow;
+		this.spool = spool;
+		
+		workers = new Thread[numberOfWorkers];
+		for (int i=0; i<numberOfWorkers; i++) {
+			workers[i] = new Thread(new Worker(), "AsyncRecordConsumer-"+name+"-"+i);
+			workers[i].setDaemon(true);
+		}
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation blocks while the queue is full, unless the overflow policy is DROP or SPILL.
+	 */
+	public void consume(final Record record) throws Exception {
+		
+		synchronized (this) {
+			Assert.state(!closed, "Consumer closed: "+name);
+			if (error!=null) throw error;
+			if (!started) {
+				for (final Thread worker : workers) {
+					worker.start();
+				}
+				started = true;
+			}
+			pending++;
+			unflushed = true;
+		}
+		final boolean queued;
+		try {
+			if (overflow==Overflow.BLOCK) {
+				queue.put(record);
+				queued = true;
+			} else {
+				queued = queue.offer(record);
+			}
+		} catch(InterruptedException e) {
+			this.done();
+			throw e;
+		}
+		
+		if (!queued) {
+			this.done();
+			this.overflow(record);
+		}
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation waits until all queued records have been processed, and all overflowing records have been spilled,
+	 * before flushing the target consumer.
+	 * @throws Exception : the first error raised by the target consumer, 
+	 *                     or an error reporting the records dropped or spilled since the last flush
+	 */
+	public void flush() throws Exception {
+		
+		synchronized (this) {
+			while (pending>0) this.wait();
+			unflushed = false;
+			if (overflows>0) {
+				final String message = overflows+" records overflowed the queue of consumer: "+name
+						               +(overflow==Overflow.SPILL ? " and were spilled to: "+spool.getFile().getPath() : " and were dropped");
+				LOG.warn(message);
+				if (error==null) error = new Exception(message);
+			}
+			overflows = 0;
+		}
+		
+		try {
+			this.spill(0);
+			consumer.flush();
+		} finally {
+			synchronized (this) {
+				final Exception e = error;
+				error = null;
+				if (e!=null) throw e;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to process all queued records and flush the target consumer, then stop the worker threads.
+	 * Errors are logged, not thrown; if interrupted while flushing, the records still queued are discarded.
+	 */
+	public void close() {
+		
+		try {
+			if (this.isUnflushed()) this.flush();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(Exception e) {
+			LOG.error("Error flushing consumer: "+name+": "+e.getMessage());
+		}
+		
+		final List<Record> discarded = new ArrayList<Record>();
+		synchronized (this) {
+			closed = true;
+			queue.drainTo(discarded);
+			pending -= discarded.size();
+			if (pending==0) this.notifyAll();
+		}
+		if (!discarded.isEmpty()) LOG.warn(discarded.size()+" queued records were discarded when closing consumer: "+name);
+		for (final Thread worker : workers) {
+			worker.interrupt();
+		}
+		
+	}
+	
+	/**
+	 * Method to apply the overflow policy to a record that could not be queued.
+	 * @param record
+	 * @throws Exception
+	 */
+	private void overflow(final Record record) throws Exception {
+		
+		synchronized (this) {
+			overflows++;
+			if (overflow==Overflow.SPILL) spilled.add(record);
+		}
+		if (overflow==Overflow.SPILL) this.spill(SPILL_BLOCK_SIZE);
+		
+	}
+	
+	/**
+	 * Method to append the records waiting to be spilled to the spool, if there are enough of them.
+	 * @param minimum : the minimum number of records to append
+	 * @throws Exception
+	 */
+	private void spill(final int minimum) throws Exception {
+		
+		final List<Record> records;
+		synchronized (this) {
+			if (spilled.isEmpty() || spilled.size()<minimum) return;
+			records = new ArrayList<Record>(spilled);
+			spilled.clear();
+		}
+		spool.append(records);
+		
+	}
+	
+	/**
+	 * @return the consumer fed by this stage
+	 */
+	public RecordConsumer getConsumer() {
+		return consumer;
+	}
+	
+	/**
+	 * @return the policy applied to the records consumed while the queue is full
+	 */
+	public Overflow getOverflow() {
+		return overflow;
+	}
+	
+	/**
+	 * @return true if records have been consumed since the last flush
+	 */
+	private synchronized boolean isUnflushed() {
+		return unflushed;
+	}
+	
+	/**
+	 * @return the number of records that overflowed the queue since the last flush
+	 */
+	public synchronized long getOverflows() {
+		return overflows;
+	}
+	
+	/**
+	 * Method invoked when a record has been processed.
+	 */
+	private synchronized void done() {
+		
+		pending--;
+		if (pending==0) this.notifyAll();
+		
+	}
+	
+	/**
+	 * Method invoked when the target consumer fails to process a record.
+	 */
+	private synchronized void fail(final Record record, final Exception e) {
+		
+		LOG.error("Error processing record: "+record.getId()+": "+e.getMessage());
+		if (error==null) error = e;
+		
+	}
+	
+	/**
+	 * Worker that hands the queued records to the target consumer.
+	 */
+	private class Worker implements Runnable {
+		
+		public void run() {
+			
+			while (!Thread.currentThread().isInterrupted()) {
+				
+				final Record record;
+				try {
+					record = queue.take();
+				} catch(InterruptedException e) {
+					return;
+				}
+				
+				try {
+					consumer.consume(record);
+				} catch(Exception e) {
+					fail(record, e);
+				} finally {
+					done();
+				}
+				
+			}
+			
+		}
+		
+	}
+
+}
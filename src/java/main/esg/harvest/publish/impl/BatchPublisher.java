@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import esg.harvest.publish.api.PublishingService;
+
+/**
+ * Class that harvests all the metadata repositories listed by a {@link HarvestManifest} within the same JVM,
+ * crawling up to a configurable number of repositories concurrently.
+ * All crawls share the same {@link PublishingService}, and therefore the same indexing pipeline and HTTP connection pool.
+ * A failed repository does not stop the others: the outcome, duration and throughput of each repository
+ * are reported at the end of the run.
+ */
+@Component("batchPublisher")
+public class BatchPublisher {
+	
+	private static final Log LOG = LogFactory.getLog(BatchPublisher.class);
+	
+	private final PublishingService publishingService;
+	
+	/**
+	 * Maximum number of repositories crawled concurrently.
+	 */
+	private final int parallelism;
+	
+	@Autowired
+	public BatchPublisher(final PublishingService publishingService,
+			              final @Value("${esg.harvest.batch.parallelism}") int parallelism) {
+		Assert.isTrue(parallelism>0, "The number of repositories crawled in parallel must be positive");
+		this.publishingService = publishingService;
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Method to harvest all repositories of a manifest, and log a summary of the run.
+	 * @param manifest
+	 * @return the results of the repositories, in manifest order
+	 * @throws InterruptedException
+	 */
+	public List<Result> run(final HarvestManifest manifest) throws InterruptedException {
+		
+		if (LOG.isInfoEnabled()) LOG.info("Harvesting "+manifest.getEntries().size()+" repositories with "+parallelism+" threads");
+		final long start = System.currentTimeMillis();
+		final AtomicInteger count = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "BatchPublisher-"+count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		final List<Result> results = new ArrayList<Result>();
+		try {
+			
+			final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final HarvestManifest.Entry entry : manifest.getEntries()) {
+				futures.add(executor.submit(new Callable<Result>() {
+					public Result call() {
+						return harvest(entry);
+					}
+				}));
+			}
+			for (final Future<Result> future : futures) {
+				try {
+					results.add(future.get());
+				} catch(ExecutionException e) {
+					// not reached: errors are reported by the results
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		this.report(results, System.currentTimeMillis()-start);
+		return results;
+		
+	}
+	
+	/**
+	 * Method to harvest a single repository.
+	 * @param entry
+	 * @return
+	 */
+	private Result harvest(final HarvestManifest.Entry entry) {
+		
+		final long start = System.currentTimeMillis();
+		try {
+			final int records = entry.isPublish() ? publishingService.publish(entry.getUri(), entry.isRecursive(), entry.getType())
+					                              : publishingService.unpublish(entry.getUri(), entry.isRecursive(), entry.getType());
+			return new Result(entry, records, System.currentTimeMillis()-start, null);
+		} catch(Exception e) {
+			LOG.error("Error harvesting repository: "+entry.getUri()+": "+e.getMessage(), e);
+			return new Result(entry, 0, System.currentTimeMillis()-start, e);
+		}
+		
+	}
+	
+	/**
+	 * Method to log the timing and throughput of each repository.
+	 * @param results
+	 * @param elapsed : the duration of the whole run, in milliseconds
+	 */
+	private void report(final List<Result> results, final long elapsed) {
+		
+		int records = 0;
+		int failed = 0;
+		final StringBuilder summary = new StringBuilder();
+		for (final Result result : results) {
+			records += result.getRecords();
+			if (result.getError()!=null) failed++;
+			summary.append(String.format("%n  %-6s %-7s %-9s %9d records %9.1f s %9.1f records/s  %s", 
+					                     result.getError()==null ? "OK" : "FAILED",
+					                     result.getEntry().getType(),
+					                     result.getEntry().isPublish() ? "publish" : "unpublish",
+					                     result.getRecords(), result.getElapsed()/1000.0, result.getThroughput(),
+					                     result.getEntry().getUri()));
+			if (result.getError()!=null) summary.append(": ").append(result.getError().getMessage());
+		}
+		LOG.info(String.format("Harvested %d repositories (%d failed), %d records in %.1f s:", 
+				               results.size(), failed, records, elapsed/1000.0)+summary);
+		
+	}
+	
+	/**
+	 * Class holding the outcome of harvesting a single repository.
+	 */
+	public static class Result {
+		
+		private final HarvestManifest.Entry entry;
+		
+		private final int records;
+		
+		private final long elapsed;
+		
+		private final Exception error;
+		
+		Result(final HarvestManifest.Entry entry, final int records, final long elapsed, final Exception error) {
+			this.entry = entry;
+			this.records = records;
+			this.elapsed = elapsed;
+			this.error = error;
+		}
+
+		public HarvestManifest.Entry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * @return the number of records published or unpublished
+		 */
+		public int getRecords() {
+			return records;
+		}
+
+		/**
+		 * @return the duration of the harvest, in milliseconds
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		/**
+		 * @return the error that stopped the harvest, or null if the harvest succeeded
+		 */
+		public Exception getError() {
+			return error;
+		}
+		
+		/**
+		 * @return the number of records harvested per second
+		 */
+		public double getThroughput() {
+			return elapsed>0 ? records*1000.0/elapsed : 0.0;
+		}
+		
+	}
+
+}
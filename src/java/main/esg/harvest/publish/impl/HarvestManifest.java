@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import esg.harvest.publish.api.MetadataRepositoryType;
+
+/**
+ * Class representing a manifest of the metadata repositories harvested by a batch run, read from a text file.
+ * Each non-empty line that does not start with '#' describes one repository as white-space separated fields:
+ * <pre>
+ * &lt;Metadata Repository URL&gt; &lt;Metadata Repository Type&gt; true|false|publish|unpublish [recursive=true|false]
+ * </pre>
+ * for example:
+ * <pre>
+ * http://pcmdi3.llnl.gov/thredds/esgcet/catalog.xml THREDDS true
+ * http://mercury.ornl.gov/oai/provider?verb=ListRecords&amp;metadataPrefix=oai_dif OAI publish recursive=false
+ * </pre>
+ */
+public class HarvestManifest {
+	
+	private final List<Entry> entries = new ArrayList<Entry>();
+	
+	/**
+	 * Constructor reads the manifest from a file.
+	 * @param file
+	 * @throws IOException : if the file cannot be read, or contains an invalid line
+	 */
+	public HarvestManifest(final File file) throws IOException {
+		
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line = null;
+			int number = 0;
+			while ((line = reader.readLine())!=null) {
+				number++;
+				line = line.trim();
+				if (line.length()==0 || line.startsWith("#")) continue;
+				try {
+					entries.add(parseEntry(line));
+				} catch(IllegalArgumentException e) {
+					throw new IOException("Invalid line "+number+" of manifest "+file.getPath()+": "+e.getMessage());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		
+	}
+	
+	/**
+	 * @return the repositories listed by the manifest, in file order
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+	
+	private static Entry parseEntry(final String line) {
+		
+		final String[] fields = line.split("\\s+");
+		if (fields.length<3) throw new IllegalArgumentException("expected: <uri> <type> true|false|publish|unpublish [options]");
+		
+		final MetadataRepositoryType type = MetadataRepositoryType.valueOf(fields[1]);
+		final boolean publish;
+		if (fields[2].equalsIgnoreCase("true") || fields[2].equalsIgnoreCase("publish")) {
+			publish = true;
+		} else if (fields[2].equalsIgnoreCase("false") || fields[2].equalsIgnoreCase("unpublish")) {
+			publish = false;
+		} else {
+			throw new IllegalArgumentException("invalid action: "+fields[2]);
+		}
+		
+		boolean recursive = true;
+		for (int i=3; i<fields.length; i++) {
+			if (fields[i].startsWith("recursive=")) {
+				recursive = Boolean.parseBoolean(fields[i].substring("recursive=".length()));
+			} else {
+				throw new IllegalArgumentException("unknown option: "+fields[i]);
+			}
+		}
+		return new Entry(fields[0], type, publish, recursive);
+		
+	}
+	
+	/**
+	 * Class representing a single repository of the manifest.
+	 */
+	public static class Entry {
+		
+		private final String uri;
+		
+		private final MetadataRepositoryType type;
+		
+		private final boolean publish;
+		
+		private final boolean recursive;
+		
+		public Entry(final String uri, final MetadataRepositoryType type, final boolean publish, final boolean recursive) {
+			this.uri = uri;
+			this.type = type;
+			this.publish = publish;
+			this.recursive = recursive;
+		}
+
+		public String getUri() {
+			return uri;
+		}
+
+		public MetadataRepositoryType getType() {
+			return type;
+		}
+
+		/**
+		 * @return true to publish the repository, false to unpublish it
+		 */
+		public boolean isPublish() {
+			return publish;
+		}
+
+		public boolean isRecursive() {
+			return recursive;
+		}
+		
+	}
+
+}
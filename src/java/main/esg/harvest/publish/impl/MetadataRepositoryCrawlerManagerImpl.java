@@ -1,65 +1,129 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.impl;
-
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.springframework.util.Assert;
-
-import esg.harvest.publish.api.MetadataRepositoryCrawler;
-import esg.harvest.publish.api.MetadataRepositoryCrawlerManager;
-import esg.harvest.publish.api.MetadataRepositoryType;
-
-/**
- * Service class that manages the harvesting of search records from different remote metadata repositories.
- * Note that the the specific MetadataRepositoryCrawlers are mapped to the corresponding metadata repository type
- * through their implementation of the support() method.
- */
-public class MetadataRepositoryCrawlerManagerImpl extends RecordProducerImpl implements MetadataRepositoryCrawlerManager {// extends RecordProducerImpl 
-	
-	private Map<MetadataRepositoryType, MetadataRepositoryCrawler> crawlers = new HashMap<MetadataRepositoryType, MetadataRepositoryCrawler>();
-		
-	private static final Log LOG = LogFactory.getLog(MetadataRepositoryCrawlerManagerImpl.class);
-	
-	
-	public MetadataRepositoryCrawlerManagerImpl(  final MetadataRepositoryCrawler[] _crawlers ){//final MetadataRepositoryCrawler[] _crawlers) {
-		//LOG.debug("CONSTRUCTOR: MetadataRepositoryCrawlerManagerImpl");
-		for (final MetadataRepositoryCrawler crawler : _crawlers) {
-			crawlers.put(crawler.supports(), crawler);
-		}
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	
-	public void crawl(final String uri, boolean recursive, final MetadataRepositoryType metadataRepositoryType) throws Exception {
-		//LOG.debug("In MetadataRepositoryCrawlerManagerImpl crawl()");
-		
-		if (LOG.isInfoEnabled()) LOG.info("uri="+uri+" recursive="+recursive+" metadataRepositoryType="+metadataRepositoryType);
-		MetadataRepositoryCrawler crawler = crawlers.get(metadataRepositoryType);
-		Assert.notNull(crawler, "Unsupported MetadataRepositoryType:"+metadataRepositoryType);
-		crawler.crawl(new URI(uri), recursive, this);//, this);
-	}
-	
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.MetadataRepositoryCrawler;
+import esg.harvest.publish.api.MetadataRepositoryCrawlerManager;
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.api.RecordProducer;
+
+/**
+ * Service class that manages the harvesting of search records from different remote metadata repositories.
+ * Note that the the specific MetadataRepositoryCrawlers are mapped to the corresponding metadata repository type
+ * through their implementation of the support() method.
+ * Several repositories can be crawled concurrently: all crawls share the same subscribed consumers,
+ * which must therefore be thread-safe, but in asynchronous mode each crawl feeds them through its own queues
+ * (see {@link RecordProducerImpl#newProducer()}), so that the end of a crawl only waits for its own records,
+ * and a crawl only fails because of the errors raised while processing its own records.
+ */
+public class MetadataRepositoryCrawlerManagerImpl extends RecordProducerImpl implements MetadataRepositoryCrawlerManager {// extends RecordProducerImpl 
+	
+	private Map<MetadataRepositoryType, MetadataRepositoryCrawler> crawlers = new HashMap<MetadataRepositoryType, MetadataRepositoryCrawler>();
+		
+	private static final Log LOG = LogFactory.getLog(MetadataRepositoryCrawlerManagerImpl.class);
+	
+	/**
+	 * Flag to let crawlers skip the content that has not changed since the previous crawl.
+	 */
+	private final boolean incremental;
+	
+	
+	public MetadataRepositoryCrawlerManagerImpl(  final MetadataRepositoryCrawler[] _crawlers, final boolean incremental ){//final MetadataRepositoryCrawler[] _crawlers) {
+		//LOG.debug("CONSTRUCTOR: MetadataRepositoryCrawlerManagerImpl");
+		this.incremental = incremental;
+		for (final MetadataRepositoryCrawler crawler : _crawlers) {
+			crawlers.put(crawler.supports(), crawler);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	public int crawl(final String uri, boolean recursive, final MetadataRepositoryType metadataRepositoryType) throws Exception {
+		//LOG.debug("In MetadataRepositoryCrawlerManagerImpl crawl()");
+		
+		MetadataRepositoryCrawler crawler = crawlers.get(metadataRepositoryType);
+		Assert.notNull(crawler, "Unsupported MetadataRepositoryType:"+metadataRepositoryType);
+		final CrawlContext context = new CrawlContext(new URI(uri), recursive, incremental);
+		if (LOG.isInfoEnabled()) LOG.info(context+" metadataRepositoryType="+metadataRepositoryType);
+		final RecordProducerImpl producer = this.newProducer();
+		try {
+			crawler.crawl(context, new CrawlProducer(context, producer));//, this);
+		} finally {
+			// send all records still buffered by the consumers
+			try {
+				producer.flush();
+			} finally {
+				producer.close();
+			}
+		}
+		if (LOG.isInfoEnabled()) LOG.info("Completed "+context.getId()+": records="+context.getRecords()+" documents="+context.getDocuments()
+				                          +" shared values="+context.getSharedValues()
+				                          +" elapsed="+(System.currentTimeMillis()-context.getStartTime())+" ms");
+		return context.getRecords();
+	}
+	
+	/**
+	 * Producer used by a single crawl, which notifies the records to the consumers of this manager
+	 * through the crawl's own producer, while counting them in the crawl context.
+	 * Consumers subscribed to this producer only receive the records of the crawl.
+	 */
+	private static class CrawlProducer implements RecordProducer {
+		
+		private final CrawlContext context;
+		
+		private final RecordProducer producer;
+		
+		CrawlProducer(final CrawlContext context, final RecordProducer producer) {
+			this.context = context;
+			this.producer = producer;
+		}
+		
+		public void subscribe(final RecordConsumer consumer) {
+			producer.subscribe(consumer);
+		}
+		
+		public void unsubscribe(final RecordConsumer consumer) {
+			producer.unsubscribe(consumer);
+		}
+		
+		public void notify(final Record record) throws Exception {
+			producer.notify(record);
+			context.addRecord();
+		}
+		
+		public void flush() throws Exception {
+			producer.flush();
+		}
+		
+	}
+	
+}
@@ -1,31 +1,70 @@
-package esg.harvest.publish.impl;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.stereotype.Component;
-
-import esg.harvest.publish.api.MetadataRepositoryCrawler;
-import esg.harvest.publish.api.RecordConsumer;
-
-/**
- * Subclass of {@link MetadataRepositoryCrawlerManagerImpl} configured for publishing.
- * 
- * @author luca.cinquini
- */
-@Component
-public class PublisherCrawlerManagerImpl extends MetadataRepositoryCrawlerManagerImpl{ // {
-	
-	private static final Log LOG = LogFactory.getLog(PublisherCrawlerManagerImpl.class);
-	
-	@Autowired
-	public PublisherCrawlerManagerImpl( final MetadataRepositoryCrawler[] _crawlers,  //)//final MetadataRepositoryCrawler[] _crawlers) //, 
-			                            final @Qualifier("indexer") RecordConsumer indexer) 
-			{
-		super(_crawlers);
-		//LOG.debug("CONSTRUCTOR: PublisherCrawlerManagerImpl");
-		this.subscribe(indexer);
-	}
-
-}
+package esg.harvest.publish.impl;
+
+import java.io.File;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import esg.harvest.publish.api.MetadataRepositoryCrawler;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Subclass of {@link MetadataRepositoryCrawlerManagerImpl} configured for publishing.
+ * If so configured, records are indexed asynchronously by a pool of worker threads 
+ * (see {@link AsyncRecordConsumer}), while the crawler keeps harvesting;
+ * records overflowing the indexing queue are handled according to the configured policy.
+ * If an archive directory is configured, a copy of each record is also written to that directory
+ * (see {@link FileWriter}), by its own worker threads in asynchronous mode.
+ * 
+ * @author luca.cinquini
+ */
+@Component
+public class PublisherCrawlerManagerImpl extends MetadataRepositoryCrawlerManagerImpl{ // {
+	
+	private static final Log LOG = LogFactory.getLog(PublisherCrawlerManagerImpl.class);
+	
+	@Autowired
+	public PublisherCrawlerManagerImpl( final MetadataRepositoryCrawler[] _crawlers,  //)//final MetadataRepositoryCrawler[] _crawlers) //, 
+			                            final @Qualifier("indexer") RecordConsumer indexer,
+			                            final @Value("${esg.harvest.indexer.workers}") int workers,
+			                            final @Value("${esg.harvest.indexer.queue}") int queueSize,
+			                            final @Value("${esg.harvest.indexer.overflow}") String overflow,
+			                            final @Value("${esg.harvest.archive.dir}") String archiveDir,
+			                            final RecordSpool recordSpool) 
+			{
+		super(_crawlers, true);
+		//LOG.debug("CONSTRUCTOR: PublisherCrawlerManagerImpl");
+		if (workers>0) {
+			if (LOG.isInfoEnabled()) LOG.info("Indexing records with "+workers+" worker threads, overflow policy: "+overflow);
+			this.setAsync(queueSize, workers, AsyncRecordConsumer.Overflow.valueOf(overflow), recordSpool);
+		}
+		this.subscribe(indexer);
+		
+		if (StringUtils.hasText(archiveDir)) {
+			final File directory = new File(archiveDir);
+			directory.mkdirs();
+			if (LOG.isInfoEnabled()) LOG.info("Archiving records to directory: "+directory.getAbsolutePath());
+			final FileWriter archiver = new FileWriter();
+			archiver.setDirectory(directory);
+			// the archive must be complete: spilled records would only be replayed to the indexer
+			this.subscribe(archiver, AsyncRecordConsumer.Overflow.BLOCK);
+		}
+	}
+	
+	/**
+	 * Method to index all pending records, then stop the indexing worker threads, if any, when the Spring context is closed.
+	 */
+	@PreDestroy
+	@Override
+	public void close() {
+		super.close();
+	}
+
+}
@@ -1,74 +1,98 @@
-package esg.harvest.publish.impl;
-
-import java.util.List;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Service;
-
-import esg.harvest.publish.api.MetadataDeletionService;
-import esg.harvest.publish.api.MetadataRepositoryCrawlerManager;
-import esg.harvest.publish.api.MetadataRepositoryType;
-import esg.harvest.publish.api.PublishingService;
-
-/**
- * Implementation of {@link PublishingService} that delegates all functionality
- * to collaborating beans for crawling remote metadata repositories, producing
- * search records, and consuming search records for ingestion or removal.
- * 
- * @author luca.cinquini
- *
- */
-@Service("publishingService")
-public class PublishingServiceImpl implements PublishingService {
-	private static final Log LOG = LogFactory.getLog(PublishingServiceImpl.class);
-	
-	/**
-	 * Collaborator that crawls remote metadata repositories for the purpose of publishing records into the system.
-	 */
-	private final MetadataRepositoryCrawlerManager publisherCrawler;
-	
-	/**
-	 * Collaborator that crawls remote metadata repositories for the purpose of unpublishing records from the system.
-	 */
-	private final MetadataRepositoryCrawlerManager unpublisherCrawler;
-	
-	/**
-	 * Collaborator that deletes records with known identifiers.
-	 */
-	private final MetadataDeletionService recordRemover;
-
-	@Autowired
-	public PublishingServiceImpl(final PublisherCrawlerManagerImpl publisherCrawler,
-			                     final UnpublisherCrawlerManagerImpl unpublisherCrawler,
-			                     final MetadataDeletionService recordRemover
-			) {
-		//LOG.debug("CONSTRUCTOR: PublishingServiceImpl");
-		
-		this.publisherCrawler = publisherCrawler;
-		this.unpublisherCrawler = unpublisherCrawler;
-		this.recordRemover = recordRemover;
-	}
-
-	@Override
-	public void publish(String uri, boolean recursive, MetadataRepositoryType metadataRepositoryType) throws Exception {
-		//LOG.debug("In PublishingServiceImpl publish()");
-		publisherCrawler.crawl(uri, recursive, metadataRepositoryType);
-	}
-
-	@Override
-	public void unpublish(String uri, boolean recursive,MetadataRepositoryType metadataRepositoryType) throws Exception {
-		//LOG.debug("In PublishingServiceImpl unpublish()");
-		unpublisherCrawler.crawl(uri, recursive, metadataRepositoryType);
-
-	}
-
-	@Override
-	public void unpublish(List<String> ids) throws Exception {
-		
-		recordRemover.delete(ids);
-
-	}
-
-}
+package esg.harvest.publish.impl;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import esg.harvest.publish.api.MetadataDeletionService;
+import esg.harvest.publish.api.MetadataRepositoryCrawlerManager;
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.api.PublishingService;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Implementation of {@link PublishingService} that delegates all functionality
+ * to collaborating beans for crawling remote metadata repositories, producing
+ * search records, and consuming search records for ingestion or removal.
+ * 
+ * @author luca.cinquini
+ *
+ */
+@Service("publishingService")
+public class PublishingServiceImpl implements PublishingService {
+	private static final Log LOG = LogFactory.getLog(PublishingServiceImpl.class);
+	
+	/**
+	 * Collaborator that crawls remote metadata repositories for the purpose of publishing records into the system.
+	 */
+	private final MetadataRepositoryCrawlerManager publisherCrawler;
+	
+	/**
+	 * Collaborator that crawls remote metadata repositories for the purpose of unpublishing records from the system.
+	 */
+	private final MetadataRepositoryCrawlerManager unpublisherCrawler;
+	
+	/**
+	 * Collaborator that deletes records with known identifiers.
+	 */
+	private final MetadataDeletionService recordRemover;
+	
+	/**
+	 * Collaborator that re-indexes spooled records.
+	 */
+	private final RecordConsumer indexer;
+	
+	/**
+	 * Spool of the records that could not be indexed.
+	 */
+	private final RecordSpool recordSpool;
+
+	@Autowired
+	public PublishingServiceImpl(final PublisherCrawlerManagerImpl publisherCrawler,
+			                     final UnpublisherCrawlerManagerImpl unpublisherCrawler,
+			                     final MetadataDeletionService recordRemover,
+			                     final @Qualifier("indexer") RecordConsumer indexer,
+			                     final RecordSpool recordSpool
+			) {
+		//LOG.debug("CONSTRUCTOR: PublishingServiceImpl");
+		
+		this.publisherCrawler = publisherCrawler;
+		this.unpublisherCrawler = unpublisherCrawler;
+		this.recordRemover = recordRemover;
+		this.indexer = indexer;
+		this.recordSpool = recordSpool;
+	}
+
+	@Override
+	public int publish(String uri, boolean recursive, MetadataRepositoryType metadataRepositoryType) throws Exception {
+		//LOG.debug("In PublishingServiceImpl publish()");
+		return publisherCrawler.crawl(uri, recursive, metadataRepositoryType);
+	}
+
+	@Override
+	public int unpublish(String uri, boolean recursive,MetadataRepositoryType metadataRepositoryType) throws Exception {
+		//LOG.debug("In PublishingServiceImpl unpublish()");
+		return unpublisherCrawler.crawl(uri, recursive, metadataRepositoryType);
+
+	}
+
+	@Override
+	public void unpublish(List<String> ids) throws Exception {
+		
+		recordRemover.delete(ids);
+
+	}
+	
+	@Override
+	public int replay(String spoolFile) throws Exception {
+		
+		return recordSpool.replay(new File(spoolFile), indexer);
+		
+	}
+
+}
@@ -1,85 +1,231 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.impl;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
-import esg.harvest.core.Record;
-import esg.harvest.publish.api.RecordConsumer;
-import esg.harvest.publish.api.RecordProducer;
-
-/**
- * Straightforward implementation of {@link RecordProducer} 
- * that immediately notifies all subscribed consumers whenever a new search record is produced
- * (i.e. there is no queuing or multi-threaded functionality).
- */
-public class RecordProducerImpl implements RecordProducer {
-	private static final Log LOG = LogFactory.getLog(RecordProducerImpl.class);
-	
-	private List<RecordConsumer> consumers = new ArrayList<RecordConsumer>();
-
-	/**
-	 * {@inheritDoc}
-	 */
-	
-	public void subscribe(final RecordConsumer consumer) {
-		//LOG.debug("In RecordProducerImpl subscribe()");
-		
-		consumers.add(consumer);
-	}
-	
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	
-	public void unsubscribe(final RecordConsumer consumer) {
-		consumers.remove(consumer);
-	}
-	
-	/**
-	 * Method for synchronous notification of generated records to all subscribed consumers.
-	 * @param record
-	 * @throws Exception
-	 */
-	
-	public void notify(final Record record) throws Exception {
-		for (final RecordConsumer consumer : consumers) {
-			consumer.consume(record);
-		}
-	}
-	
-	
-	/**
-	 * Method to bulk-subscribe a list of record consumers
-	 * (and automatically un-subscribe all previously consumers).
-	 * @param consumers
-	 */
-	
-	public void setConsumers(final List<RecordConsumer> consumers) {
-		this.consumers.clear();
-		this.consumers.addAll(consumers);
-	}
-	
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.BufferedRecordConsumer;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.api.RecordProducer;
+
+/**
+ * Straightforward implementation of {@link RecordProducer} 
+ * that notifies all subscribed consumers whenever a new search record is produced.
+ * 
+ * By default, consumers are invoked in turn on the producing thread (i.e. there is no queuing or multi-threaded functionality).
+ * In asynchronous mode (see {@link #setAsync(int, int, AsyncRecordConsumer.Overflow, RecordSpool)}), 
+ * each consumer is fed by its own {@link AsyncRecordConsumer}, with a bounded queue and worker threads,
+ * so that a slow consumer does not hold back the other consumers, nor the producer (depending on the overflow policy).
+ * In both modes {@link #flush()} returns once all records notified so far have been processed by all consumers.
+ * Independent producers of the same records (e.g. concurrent crawls) can each use their own asynchronous stages,
+ * created by {@link #newProducer()}, so that each is flushed for its own records only.
+ * 
+ * Consumers can be subscribed and un-subscribed at any time, from any thread.
+ */
+public class RecordProducerImpl implements RecordProducer {
+	private static final Log LOG = LogFactory.getLog(RecordProducerImpl.class);
+	
+	private final List<RecordConsumer> consumers = new CopyOnWriteArrayList<RecordConsumer>();
+	
+	/**
+	 * Asynchronous stage feeding each subscribed consumer (asynchronous mode only).
+	 */
+	private final Map<RecordConsumer, AsyncRecordConsumer> stages = new ConcurrentHashMap<RecordConsumer, AsyncRecordConsumer>();
+	
+	/**
+	 * Size of the queue of each consumer (0 for synchronous notification).
+	 */
+	private int queueSize = 0;
+	
+	private int workers = 1;
+	
+	private AsyncRecordConsumer.Overflow overflow = AsyncRecordConsumer.Overflow.BLOCK;
+	
+	private RecordSpool spool;
+	
+	/**
+	 * Method to switch to asynchronous notification of the consumers subscribed afterwards.
+	 * @param queueSize : the maximum number of records waiting to be processed by each consumer
+	 * @param workers : the number of threads invoking each consumer (consumers must be thread-safe if greater than 1)
+	 * @param overflow : the default policy applied to the records notified while the queue of a consumer is full
+	 * @param spool : the spool receiving the records that overflow a queue (SPILL policy only)
+	 */
+	public synchronized void setAsync(final int queueSize, final int workers, 
+			                          final AsyncRecordConsumer.Overflow overflow, final RecordSpool spool) {
+		Assert.isTrue(queueSize>0, "The queue size must be positive");
+		this.queueSize = queueSize;
+		this.workers = workers;
+		this.overflow = overflow;
+		this.spool = spool;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	public synchronized void subscribe(final RecordConsumer consumer) {
+		//LOG.debug("In RecordProducerImpl subscribe()");
+		
+		this.subscribe(consumer, overflow);
+	}
+	
+	/**
+	 * Method to subscribe a consumer with a specific overflow policy (asynchronous mode only).
+	 * @param consumer
+	 * @param overflow
+	 */
+	public synchronized void subscribe(final RecordConsumer consumer, final AsyncRecordConsumer.Overflow overflow) {
+		
+		if (queueSize>0) {
+			final AsyncRecordConsumer stage = new AsyncRecordConsumer(consumer, queueSize, workers, overflow, spool);
+			stages.put(consumer, stage);
+			consumers.add(stage);
+		} else {
+			consumers.add(consumer);
+		}
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * In asynchronous mode, the records still queued for the consumer are processed before it is un-subscribed.
+	 */
+	
+	public synchronized void unsubscribe(final RecordConsumer consumer) {
+		
+		final AsyncRecordConsumer stage = stages.remove(consumer);
+		if (stage!=null) {
+			consumers.remove(stage);
+			stage.close();
+		} else {
+			consumers.remove(consumer);
+		}
+		
+	}
+	
+	/**
+	 * Method for notification of generated records to all subscribed consumers.
+	 * @param record
+	 * @throws Exception
+	 */
+	
+	public void notify(final Record record) throws Exception {
+		for (final RecordConsumer consumer : consumers) {
+			consumer.consume(record);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * All consumers are flushed, even if some fail: the first error is then re-thrown.
+	 */
+	public void flush() throws Exception {
+		
+		Exception error = null;
+		for (final RecordConsumer consumer : consumers) {
+			try {
+				consumer.flush();
+			} catch(Exception e) {
+				if (error==null) error = e;
+				else LOG.error("Error flushing consumer: "+e.getMessage());
+			}
+		}
+		if (error!=null) throw error;
+		
+	}
+	
+	/**
+	 * Method to process all pending records, then stop the worker threads of the asynchronous consumers, if any
+	 * (see {@link AsyncRecordConsumer#close()}).
+	 */
+	public synchronized void close() {
+		
+		for (final AsyncRecordConsumer stage : stages.values()) {
+			stage.close();
+		}
+		
+	}
+	
+	
+	/**
+	 * Method to create a producer that notifies the consumers currently subscribed to this producer.
+	 * In asynchronous mode, the new producer feeds each consumer through its own {@link AsyncRecordConsumer} 
+	 * (with the same settings and overflow policy), so that flushing it only waits for the records it notified, 
+	 * and only reports the errors raised while processing them.
+	 * Consumers that buffer records ({@link BufferedRecordConsumer}) are fed through a new buffer for the same reason,
+	 * in both modes.
+	 * The new producer must be closed when no longer used.
+	 * @return
+	 */
+	public synchronized RecordProducerImpl newProducer() {
+		
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		if (queueSize>0) producer.setAsync(queueSize, workers, overflow, spool);
+		for (final RecordConsumer consumer : consumers) {
+			if (consumer instanceof AsyncRecordConsumer && stages.get(((AsyncRecordConsumer)consumer).getConsumer())==consumer) {
+				final AsyncRecordConsumer stage = (AsyncRecordConsumer)consumer;
+				producer.subscribe(newBuffer(stage.getConsumer()), stage.getOverflow());
+			} else {
+				producer.consumers.add(newBuffer(consumer));
+			}
+		}
+		return producer;
+		
+	}
+	
+	/**
+	 * Method to return a new buffer of a consumer, or the consumer itself if it does not support buffers.
+	 * @param consumer
+	 * @return
+	 */
+	private static RecordConsumer newBuffer(final RecordConsumer consumer) {
+		
+		return consumer instanceof BufferedRecordConsumer ? ((BufferedRecordConsumer)consumer).newBuffer() : consumer;
+		
+	}
+	
+	/**
+	 * Method to bulk-subscribe a list of record consumers
+	 * (and automatically un-subscribe all previously consumers, once their pending records are processed).
+	 * @param consumers
+	 */
+	
+	public synchronized void setConsumers(final List<RecordConsumer> consumers) {
+		for (final AsyncRecordConsumer stage : stages.values()) {
+			stage.close();
+		}
+		this.stages.clear();
+		this.consumers.clear();
+		for (final RecordConsumer consumer : consumers) {
+			this.subscribe(consumer);
+		}
+	}
+	
+
+}
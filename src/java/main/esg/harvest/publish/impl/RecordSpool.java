@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import esg.harvest.core.CompactRecord;
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Append-only file of records that could not be delivered (e.g. to the Solr server),
+ * so that they can be delivered again later without re-crawling the metadata repositories.
+ * 
+ * Records are appended in blocks, each block being written with a single write and synced to disk.
+ * Each block is encoded as: length (int), CRC32 checksum (long), number of records (int), records;
+ * each record is encoded as: id, number of fields (int), then for each field: name, number of values (int), values;
+ * each string is encoded as its length in bytes (int) followed by its UTF-8 bytes.
+ * A truncated or corrupted last block (e.g. after a crash) is ignored when the spool is read.
+ * 
+ * The spool is disabled if no file is configured.
+ * This class is thread-safe.
+ */
+@Component("recordSpool")
+public class RecordSpool {
+	
+	private static final Log LOG = LogFactory.getLog(RecordSpool.class);
+	
+	private final static String UTF8 = "UTF-8";
+	
+	/**
+	 * Suffix of the file holding the records being replayed.
+	 */
+	private final static String REPLAY_SUFFIX = ".replay";
+	
+	/**
+	 * The spool file, or null if spooling is disabled.
+	 */
+	private final File file;
+	
+	/**
+	 * Constructor.
+	 * @param path : the path of the spool file, or an empty string to disable spooling
+	 */
+	@Autowired
+	public RecordSpool(final @Value("${esg.harvest.spool.file}") String path) {
+		file = StringUtils.hasText(path) ? new File(path) : null;
+	}
+	
+	/**
+	 * Method to determine whether records can be spooled.
+	 * @return
+	 */
+	public boolean isEnabled() {
+		return file!=null;
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Method to append records at the end of the spool file.
+	 * @param records
+	 * @throws IOException
+	 */
+	public synchronized void append(final List<Record> records) throws IOException {
+		
+		if (file==null) throw new IllegalStateException("Record spool is not configured");
+		
+		// encode block
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream data = new DataOutputStream(bytes);
+		data.writeInt(records.size());
+		for (final Record record : records) {
+			writeRecord(data, record);
+		}
+		data.flush();
+		final byte[] payload = bytes.toByteArray();
+		final CRC32 crc = new CRC32();
+		crc.update(payload);
+		
+		final ByteArrayOutputStream block = new ByteArrayOutputStream(payload.length+12);
+		final DataOutputStream header = new DataOutputStream(block);
+		header.writeInt(payload.length);
+		header.writeLong(crc.getValue());
+		header.write(payload);
+		header.flush();
+		
+		// append block
+		if (file.getParentFile()!=null) file.getParentFile().mkdirs();
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(block.toByteArray());
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		
+	}
+	
+	/**
+	 * Method to deliver all records from a spool file to the given consumer, which is flushed at the end.
+	 * If the file is this spool's file, it is first moved aside, so that records failing again are spooled anew;
+	 * a file left aside by an interrupted replay is replayed first.
+	 * The replayed file is deleted once all its records have been delivered.
+	 * @param source : the spool file to replay
+	 * @param consumer
+	 * @return the number of records delivered
+	 * @throws Exception
+	 */
+	public int replay(final File source, final RecordConsumer consumer) throws Exception {
+		
+		File replayFile = source;
+		if (file!=null && source.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+			replayFile = new File(file.getPath()+REPLAY_SUFFIX);
+			synchronized (this) {
+				if (replayFile.exists()) {
+					LOG.warn("Replaying records left by a previous replay: "+replayFile.getAbsolutePath()
+							+" (replay again to deliver the records in: "+file.getAbsolutePath()+")");
+				} else if (!file.exists()) {
+					return 0;
+				} else if (!file.renameTo(replayFile)) {
+					throw new IOException("Cannot move spool file "+file.getAbsolutePath()+" to "+replayFile.getAbsolutePath());
+				}
+			}
+		}
+		
+		if (LOG.isInfoEnabled()) LOG.info("Replaying records from spool file: "+replayFile.getAbsolutePath());
+		int count = 0;
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(replayFile)));
+		try {
+			List<Record> records;
+			while ((records = readBlock(in))!=null) {
+				for (final Record record : records) {
+					consumer.consume(record);
+					count++;
+				}
+			}
+		} finally {
+			in.close();
+		}
+		consumer.flush();
+		
+		if (!replayFile.delete()) LOG.warn("Cannot delete replayed spool file: "+replayFile.getAbsolutePath());
+		if (LOG.isInfoEnabled()) LOG.info("Replayed "+count+" records");
+		return count;
+		
+	}
+	
+	/**
+	 * Method to read the next block of records from a spool file.
+	 * @param in
+	 * @return the records, or null at the end of the file (or at a truncated or corrupted block)
+	 * @throws IOException
+	 */
+	static List<Record> readBlock(final DataInputStream in) throws IOException {
+		
+		final byte[] payload;
+		final long checksum;
+		try {
+			final int length = in.readInt();
+			checksum = in.readLong();
+			if (length<0) throw new EOFException();
+			payload = new byte[length];
+			in.readFully(payload);
+		} catch(EOFException e) {
+			return null;
+		}
+		
+		final CRC32 crc = new CRC32();
+		crc.update(payload);
+		if (crc.getValue()!=checksum) {
+			LOG.warn("Ignoring corrupted block at the end of the spool file");
+			return null;
+		}
+		
+		final DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+		final int size = data.readInt();
+		final List<Record> records = new ArrayList<Record>(size);
+		for (int i=0; i<size; i++) {
+			records.add(readRecord(data));
+		}
+		return records;
+		
+	}
+	
+	/**
+	 * Method to encode a record.
+	 * @param out
+	 * @param record
+	 * @throws IOException
+	 */
+	static void writeRecord(final DataOutputStream out, final Record record) throws IOException {
+		
+		writeString(out, record.getId());
+		final Map<String, List<String>> fields = record.getFields();
+		out.writeInt(fields.size());
+		for (final Map.Entry<String, List<String>> field : fields.entrySet()) {
+			writeString(out, field.getKey());
+			out.writeInt(field.getValue().size());
+			for (final String value : field.getValue()) {
+				writeString(out, value);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to decode a record.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	static Record readRecord(final DataInputStream in) throws IOException {
+		
+		final Record record = new CompactRecord(readString(in));
+		final int numberOfFields = in.readInt();
+		for (int i=0; i<numberOfFields; i++) {
+			final String name = readString(in);
+			final int numberOfValues = in.readInt();
+			for (int j=0; j<numberOfValues; j++) {
+				record.addField(name, readString(in));
+			}
+		}
+		return record;
+		
+	}
+	
+	private static void writeString(final DataOutputStream out, final String s) throws IOException {
+		
+		if (s==null) {
+			out.writeInt(-1);
+		} else {
+			final byte[] bytes = s.getBytes(UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		
+	}
+	
+	private static String readString(final DataInputStream in) throws IOException {
+		
+		final int length = in.readInt();
+		if (length<0) return null;
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+		
+	}
+
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+/**
+ * API for deciding when the updates sent to a Solr server are committed,
+ * i.e. made visible to searchers.
+ * Each client that indexes or removes records uses its own policy instance, 
+ * since the policy may keep track of the documents sent since the client's last commit.
+ */
+public interface CommitPolicy {
+	
+	/**
+	 * Method to decide whether the next update message must be committed as soon as it is processed.
+	 * @param numberOfDocuments : the number of documents added or deleted by the message
+	 * @return
+	 */
+	boolean isCommitRequired(int numberOfDocuments);
+	
+	/**
+	 * Method to decide whether a commit must be issued when a client is flushed at the end of a crawl.
+	 * @return
+	 */
+	boolean isCommitRequiredOnFlush();
+	
+	/**
+	 * Method to return the maximum time (in milliseconds) before added documents are committed by the server,
+	 * or 0 if documents must not be sent with a "commitWithin" directive.
+	 * @return
+	 */
+	long getCommitWithin();
+
+}
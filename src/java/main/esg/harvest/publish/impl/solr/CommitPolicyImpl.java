@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Configurable implementation of {@link CommitPolicy}, supporting the following modes:
+ * <ul>
+ * 	<li>CRAWL: a single commit is issued at the end of each crawl</li>
+ * 	<li>WITHIN: documents are added with a "commitWithin" directive, and the server commits them within the given time</li>
+ * 	<li>DOCUMENTS: a commit is issued every N documents, and at the end of each crawl</li>
+ * 	<li>NONE: no commit is ever issued, the server is expected to be configured with &lt;autoCommit&gt;</li>
+ * </ul>
+ * The bean is a prototype: each client (indexer, scrabber) is injected its own instance, so that in DOCUMENTS mode
+ * the documents sent by a client only count towards the commits issued by that client.
+ * This class is thread-safe.
+ */
+@Component("commitPolicy")
+@Scope(BeanDefinition.SCOPE_PROTOTYPE)
+public class CommitPolicyImpl implements CommitPolicy {
+	
+	public enum Mode {
+		CRAWL,
+		WITHIN,
+		DOCUMENTS,
+		NONE;
+	}
+	
+	private final Mode mode;
+	
+	/**
+	 * Maximum time before added documents are committed by the server, in milliseconds (WITHIN mode only).
+	 */
+	private final long commitWithin;
+	
+	/**
+	 * Number of documents between two consecutive commits (DOCUMENTS mode only).
+	 */
+	private final int commitDocs;
+	
+	/**
+	 * Number of documents sent by the client since its last commit (DOCUMENTS mode only).
+	 */
+	private int uncommittedDocs = 0;
+	
+	/**
+	 * Constructor for a policy that commits every given number of documents.
+	 * @param commitDocs
+	 */
+	public CommitPolicyImpl(final int commitDocs) {
+		this(Mode.DOCUMENTS.toString(), 0L, commitDocs);
+	}
+	
+	@Autowired
+	public CommitPolicyImpl(final @Value("${esg.harvest.solr.commit}") String mode,
+			                final @Value("${esg.harvest.solr.commit.within}") long commitWithin,
+			                final @Value("${esg.harvest.solr.commit.docs}") int commitDocs) {
+		
+		this.mode = Mode.valueOf(mode.trim().toUpperCase());
+		if (this.mode==Mode.WITHIN) Assert.isTrue(commitWithin>0, "The commitWithin time must be positive");
+		if (this.mode==Mode.DOCUMENTS) Assert.isTrue(commitDocs>0, "The number of documents between commits must be positive");
+		this.commitWithin = commitWithin;
+		this.commitDocs = commitDocs;
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized boolean isCommitRequired(final int numberOfDocuments) {
+		
+		if (mode==Mode.DOCUMENTS) {
+			uncommittedDocs += numberOfDocuments;
+			if (uncommittedDocs>=commitDocs) {
+				uncommittedDocs = 0;
+				return true;
+			}
+		}
+		return false;
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized boolean isCommitRequiredOnFlush() {
+		
+		if (mode==Mode.CRAWL || mode==Mode.DOCUMENTS) {
+			uncommittedDocs = 0;
+			return true;
+		}
+		return false;
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCommitWithin() {
+		return (mode==Mode.WITHIN ? commitWithin : 0L);
+	}
+	
+	public Mode getMode() {
+		return mode;
+	}
+
+}
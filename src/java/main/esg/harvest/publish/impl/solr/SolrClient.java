@@ -1,66 +1,169 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.impl.solr;
-
-import java.net.URL;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
-import esg.harvest.publish.api.RecordConsumer;
-import esg.harvest.query.impl.solr.SolrUrlBuilder;
-import esg.harvest.utils.HttpClient;
-
-/**
- * Abstract implementation of {@link RecordConsumer} that sends records to a remote Solr server.
- * Specific sub-classes define how the records are consumed (inserted, removed, etc.).
- */
-public abstract class SolrClient implements RecordConsumer {
-					
-	protected final Log LOG = LogFactory.getLog(this.getClass());
-	
-	/**
-	 * Utility class used to generate Solr XML messages.
-	 */
-	protected SolrXmlBuilder messageBuilder = new SolrXmlBuilder();
-
-	
-	/**
-	 * Instance attribute shared among all HTTP request,
-	 * since the generation of the POST URL does not depend on the instance's state.
-	 */
-	protected SolrUrlBuilder solrUrlBuilder;
-	
-	/**
-	 * Client used to execute HTTP/POST requests.
-	 */
-	protected HttpClient httpClient = new HttpClient();
-	
-	/**
-	 * Constructor initializes the URL builder.
-	 * @param url
-	 */
-	public SolrClient(final URL url) {
-		
-		solrUrlBuilder = new SolrUrlBuilder(url);
-		
-	}
-
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.query.impl.solr.SolrUrlBuilder;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.RetryPolicy;
+
+/**
+ * Abstract implementation of {@link RecordConsumer} that sends records to a remote Solr server.
+ * Specific sub-classes define how the records are consumed (inserted, removed, etc.).
+ */
+public abstract class SolrClient implements RecordConsumer {
+					
+	protected final Log LOG = LogFactory.getLog(this.getClass());
+	
+	/**
+	 * Utility class used to stream Solr XML messages.
+	 */
+	protected SolrXmlWriter messageWriter = new SolrXmlWriter();
+
+	
+	/**
+	 * Instance attribute shared among all HTTP request,
+	 * since the generation of the POST URL does not depend on the instance's state.
+	 */
+	protected SolrUrlBuilder solrUrlBuilder;
+	
+	/**
+	 * Client used to execute HTTP/POST requests (shared by all Solr clients).
+	 */
+	protected final HttpClient httpClient;
+	
+	/**
+	 * Policy deciding whether failed requests are sent again.
+	 */
+	protected final RetryPolicy retryPolicy;
+	
+	/**
+	 * Policy deciding when the updates sent to the Solr server are committed.
+	 */
+	protected final CommitPolicy commitPolicy;
+	
+	/**
+	 * Flag indicating that updates may have been sent to the Solr server since the last commit.
+	 * Note that the flag is not cleared by updates that request an immediate commit,
+	 * since other updates may be sent concurrently.
+	 */
+	private volatile boolean uncommitted = false;
+	
+	/**
+	 * Constructor initializes the URL builder.
+	 * @param url
+	 * @param commitPolicy
+	 * @param httpClient
+	 * @param retryPolicy
+	 */
+	public SolrClient(final URL url, final CommitPolicy commitPolicy, final HttpClient httpClient, final RetryPolicy retryPolicy) {
+		
+		solrUrlBuilder = new SolrUrlBuilder(url);
+		this.commitPolicy = commitPolicy;
+		this.httpClient = httpClient;
+		this.retryPolicy = retryPolicy;
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation commits all pending updates if so required by the commit policy.
+	 * Sub-classes that buffer records must override this method to send them first.
+	 */
+	public void flush() throws Exception {
+		
+		if (commitPolicy.isCommitRequiredOnFlush()) this.commit();
+		
+	}
+	
+	/**
+	 * Method to post an update message to the Solr server,
+	 * requesting an immediate commit if so required by the commit policy.
+	 * This method can be invoked concurrently by several threads.
+	 * @param message : the update message, streamed directly to the server
+	 * @param numberOfDocuments : the number of documents added or removed by the message
+	 * @throws Exception
+	 */
+	protected void update(final HttpClient.PostBody message, final int numberOfDocuments) throws Exception {
+		
+		final boolean commit = commitPolicy.isCommitRequired(numberOfDocuments);
+		final URL postUrl = solrUrlBuilder.buildUpdateUrl(commit);
+		if (LOG.isDebugEnabled()) LOG.debug("Posting update message for "+numberOfDocuments+" documents to URL:"+postUrl.toString());
+		this.post(postUrl, message);
+		if (!commit) uncommitted = true;
+		
+	}
+	
+	/**
+	 * Method to commit all updates sent to the Solr server since the last commit, if any.
+	 * @throws Exception
+	 */
+	protected synchronized void commit() throws Exception {
+		
+		if (uncommitted) {
+			// clear the flag first, so that updates sent concurrently are not forgotten
+			uncommitted = false;
+			final URL postUrl = solrUrlBuilder.buildUpdateUrl(false);
+			if (LOG.isInfoEnabled()) LOG.info("Committing updates to URL:"+postUrl.toString());
+			try {
+				this.post(postUrl, new HttpClient.PostBody() {
+					public void writeTo(final OutputStream out) throws IOException {
+						messageWriter.writeCommitMessage(out);
+					}
+				});
+			} catch(Exception e) {
+				uncommitted = true;
+				throw e;
+			}
+		}
+		
+	}
+
+	/**
+	 * Method to post a message to the Solr server, 
+	 * sending it again after transient errors as allowed by the retry policy.
+	 * @param postUrl
+	 * @param message : the message, which is written again for each attempt
+	 * @throws Exception
+	 */
+	private void post(final URL postUrl, final HttpClient.PostBody message) throws Exception {
+		
+		for (int attempt=1; ; attempt++) {
+			try {
+				httpClient.doPostXml(postUrl, message);
+				return;
+			} catch(Exception e) {
+				if (!retryPolicy.isRetryRequired(attempt, e)) throw e;
+				final long delay = retryPolicy.getDelay(attempt, e);
+				LOG.warn("Error posting to URL:"+postUrl.toString()+" (attempt "+attempt+"): "+e.getMessage()+", retrying in "+delay+" ms");
+				if (delay>0) Thread.sleep(delay);
+			}
+		}
+		
+	}
+
+}
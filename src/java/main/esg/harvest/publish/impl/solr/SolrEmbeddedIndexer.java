@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.io.File;
+import java.util.Properties;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.CoreDescriptor;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Implementation of {@link SolrServerIndexer} that writes documents directly into a local Solr index,
+ * running an embedded Solr core within the same JVM: no HTTP connection or servlet container is involved,
+ * and documents are handed to the core's update processors without being serialized.
+ * This mode is meant for large initial loads, and for building index snapshots that are later shipped to the serving Solr.
+ * Note that the index must not be opened by another Solr server at the same time.
+ * 
+ * The Solr home directory must contain conf/solrconfig.xml and conf/schema.xml (for example copied from etc/conf/solr),
+ * together with all the files they reference.
+ * 
+ * This bean is selected as the "indexer" by setting the property esg.harvest.indexer=embeddedIndexer.
+ */
+@Component("embeddedIndexer")
+@Lazy
+public class SolrEmbeddedIndexer extends SolrServerIndexer {
+	
+	/**
+	 * Name of the single core loaded from the Solr home directory.
+	 */
+	private final static String CORE_NAME = "";
+	
+	/**
+	 * Core property that overrides the index location configured in solrconfig.xml as ${solr.data.dir:...}.
+	 */
+	private final static String DATA_DIR_PROPERTY = "solr.data.dir";
+	
+	private final CoreContainer coreContainer;
+	
+	/**
+	 * Constructor loads the embedded Solr core.
+	 * @param solrHome : the Solr home directory
+	 * @param dataDir : the directory containing the index data
+	 * @param commitPolicy
+	 * @param maxDocs : maximum number of documents processed in a single request
+	 * @throws Exception
+	 */
+	@Autowired
+	public SolrEmbeddedIndexer(final @Value("${esg.harvest.solr.home}") String solrHome,
+			                   final @Value("${esg.harvest.solr.data.dir}") String dataDir,
+			                   final CommitPolicy commitPolicy,
+			                   final @Value("${esg.harvest.solr.batch.docs}") int maxDocs) throws Exception {
+		this(loadCore(solrHome, dataDir), commitPolicy, maxDocs);
+	}
+	
+	private SolrEmbeddedIndexer(final CoreContainer coreContainer, final CommitPolicy commitPolicy, final int maxDocs) {
+		super(new EmbeddedSolrServer(coreContainer, CORE_NAME), commitPolicy, maxDocs);
+		this.coreContainer = coreContainer;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation hands the documents and commit directly to the update processors of the embedded core.
+	 */
+	@Override
+	protected void process(final UpdateRequest request) throws Exception {
+		
+		final SolrCore core = coreContainer.getCore(CORE_NAME);
+		final SolrQueryRequest req = new LocalSolrQueryRequest(core, new ModifiableSolrParams());
+		try {
+			
+			final UpdateRequestProcessor processor = core.getUpdateProcessingChain(null).createProcessor(req, new SolrQueryResponse());
+			
+			if (request.getDocuments()!=null) {
+				for (final SolrInputDocument doc : request.getDocuments()) {
+					final AddUpdateCommand cmd = new AddUpdateCommand();
+					cmd.solrDoc = doc;
+					cmd.allowDups = false;
+					cmd.overwriteCommitted = true;
+					cmd.overwritePending = true;
+					cmd.commitWithin = request.getCommitWithin();
+					processor.processAdd(cmd);
+				}
+			}
+			
+			if (request.getAction()==AbstractUpdateRequest.ACTION.COMMIT) {
+				final CommitUpdateCommand cmd = new CommitUpdateCommand(false);
+				cmd.waitFlush = request.isWaitFlush();
+				cmd.waitSearcher = request.isWaitSearcher();
+				processor.processCommit(cmd);
+			}
+			
+			processor.finish();
+			
+		} finally {
+			req.close();
+			core.close();
+		}
+		
+	}
+	
+	/**
+	 * Method to close the embedded Solr core when the Spring context is closed.
+	 */
+	@PreDestroy
+	public void close() {
+		coreContainer.shutdown();
+	}
+	
+	/**
+	 * Method to load the single core of the Solr home directory.
+	 * @param solrHome
+	 * @param dataDir
+	 * @return
+	 * @throws Exception
+	 */
+	private static CoreContainer loadCore(final String solrHome, final String dataDir) throws Exception {
+		
+		final File instanceDir = new File(solrHome);
+		if (!new File(instanceDir, "conf").isDirectory()) {
+			throw new IllegalArgumentException("Invalid Solr home directory (missing conf/ sub-directory): "+instanceDir.getAbsolutePath());
+		}
+		
+		final CoreContainer coreContainer = new CoreContainer();
+		try {
+			final CoreDescriptor descriptor = new CoreDescriptor(coreContainer, CORE_NAME, instanceDir.getAbsolutePath());
+			final Properties properties = new Properties();
+			properties.setProperty(DATA_DIR_PROPERTY, new File(dataDir).getAbsolutePath());
+			descriptor.setCoreProperties(properties);
+			coreContainer.register(CORE_NAME, coreContainer.create(descriptor), false);
+			return coreContainer;
+		} catch(Exception e) {
+			coreContainer.shutdown();
+			throw e;
+		}
+		
+	}
+
+}
@@ -1,57 +1,379 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.impl.solr;
-
-import java.net.URL;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Component;
-
-import esg.harvest.core.Record;
-
-/**
- * Implementation of {@link SolrClient} that sends (fully populated) records to a Solr server for indexing.
- */
-@Component("indexer")
-public class SolrIndexer extends SolrClient {
-				
-	/**
-	 * Constructor delegates to superclass.
-	 * @param url
-	 */
-	@Autowired
-	public SolrIndexer(final @Value("${esg.harvest.solr.url}") URL url) {
-		super(url);
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	public void consume(final Record record) throws Exception {
-		//LOG.debug("In SolrIndexer consume()");
-		final String xml = messageBuilder.buildAddMessage(record, true);
-		final URL postUrl = solrUrlBuilder.buildUpdateUrl(true); // commit=true
-		//LOG.debug("postUrl: " + postUrl);
-		if (LOG.isDebugEnabled()) LOG.debug("Posting record:"+xml+" to URL:"+postUrl.toString());
-		httpClient.doPostXml(postUrl, xml);
-		
-	}
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.BufferedRecordConsumer;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.impl.RecordSpool;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.RetryPolicy;
+
+/**
+ * Implementation of {@link SolrClient} that sends (fully populated) records to a Solr server for indexing.
+ * Records are buffered and sent as a single &lt;add&gt; message containing many &lt;doc&gt; elements,
+ * whenever the buffer reaches the maximum number of documents, the maximum payload size, 
+ * or the oldest buffered record has waited longer than the maximum latency.
+ * All remaining records are sent when the consumer is flushed at the end of a crawl.
+ * This class is thread-safe, and messages are sent outside of any lock, so several threads can index records concurrently.
+ * Independent producers (e.g. concurrent crawls) should each consume their records through their own buffer,
+ * created by {@link #newBuffer()}, so that flushing only sends and waits for their own records.
+ * Messages that fail with transient errors are sent again according to the configured {@link RetryPolicy};
+ * if they still fail, their records are appended to the {@link RecordSpool} (if enabled) for later delivery,
+ * instead of aborting the crawl.
+ * Records are committed according to the configured {@link CommitPolicy}.
+ */
+@Component("xmlIndexer")
+public class SolrIndexer extends SolrClient implements BufferedRecordConsumer {
+	
+	/**
+	 * Approximate number of characters added by the XML markup around each field value.
+	 */
+	private final static int FIELD_OVERHEAD = "<field name=\"\"></field>".length();
+	
+	/**
+	 * Maximum number of records sent to the Solr server in a single message.
+	 */
+	private final int maxDocs;
+	
+	/**
+	 * Maximum (approximate) size of a single message, in bytes (0 for no limit).
+	 */
+	private final long maxBytes;
+	
+	/**
+	 * Maximum time a record is kept in the buffer, in milliseconds (0 for no limit).
+	 */
+	private final long maxLatency;
+	
+	/**
+	 * Spool for the records that cannot be sent to the Solr server, even after retrying.
+	 */
+	private final RecordSpool spool;
+	
+	/**
+	 * Timer used to send the buffered records once the maximum latency has expired (shared by all buffers),
+	 * whose thread is only started when the first flush is scheduled.
+	 */
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "SolrIndexer-timer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	/**
+	 * Buffer of the records consumed directly by this indexer.
+	 */
+	private final Buffer buffer = new Buffer();
+	
+	/**
+	 * Constructor for an indexer that sends and commits each record as soon as it is consumed.
+	 * @param url
+	 * @param httpClient : the (shared) HTTP client, whose connection pool is not shut down by this indexer
+	 */
+	public SolrIndexer(final URL url, final HttpClient httpClient) {
+		this(url, new CommitPolicyImpl(1), httpClient, new RetryPolicy(), new RecordSpool(null), 1, 0L, 0L);
+	}
+				
+	/**
+	 * Constructor delegates to superclass and configures the record buffer.
+	 * @param url
+	 * @param commitPolicy
+	 * @param httpClient
+	 * @param retryPolicy
+	 * @param spool : spool for the records that cannot be sent
+	 * @param maxDocs
+	 * @param maxBytes
+	 * @param maxLatency
+	 */
+	@Autowired
+	public SolrIndexer(final @Value("${esg.harvest.solr.url}") URL url,
+			           final CommitPolicy commitPolicy,
+			           final HttpClient httpClient,
+			           final RetryPolicy retryPolicy,
+			           final RecordSpool spool,
+			           final @Value("${esg.harvest.solr.batch.docs}") int maxDocs,
+			           final @Value("${esg.harvest.solr.batch.bytes}") long maxBytes,
+			           final @Value("${esg.harvest.solr.batch.latency}") long maxLatency) {
+		super(url, commitPolicy, httpClient, retryPolicy);
+		Assert.isTrue(maxDocs>0, "The maximum number of documents per message must be positive");
+		this.spool = spool;
+		this.maxDocs = maxDocs;
+		this.maxBytes = maxBytes;
+		this.maxLatency = maxLatency;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This method can be invoked concurrently by several threads: 
+	 * each thread that fills the buffer sends the buffered records over its own HTTP connection.
+	 */
+	public void consume(final Record record) throws Exception {
+		
+		buffer.consume(record);
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation sends all records consumed directly by this indexer to the Solr server, 
+	 * waits for those being sent by other threads,
+	 * and then commits them if so required by the commit policy.
+	 * Records consumed through the buffers returned by {@link #newBuffer()} are not affected.
+	 */
+	@Override
+	public void flush() throws Exception {
+		
+		buffer.flush();
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The new buffer shares this indexer's connection settings, commit policy, spool and timer,
+	 * but keeps its own records, messages being sent and errors raised by the timer thread.
+	 */
+	public RecordConsumer newBuffer() {
+		
+		return new Buffer();
+		
+	}
+	
+	/**
+	 * Method to send records removed from a buffer as a single message.
+	 * @param records
+	 * @throws Exception
+	 */
+	private void send(final List<Record> records) throws Exception {
+		
+		try {
+			if (LOG.isInfoEnabled()) LOG.info("Sending "+records.size()+" records for indexing");
+			final long commitWithin = commitPolicy.getCommitWithin();
+			this.update(new HttpClient.PostBody() {
+				public void writeTo(final OutputStream out) throws IOException {
+					messageWriter.writeAddMessage(records, commitWithin, out);
+				}
+			}, records.size());
+		} catch(Exception e) {
+			if (!spool.isEnabled()) throw e;
+			LOG.error("Error sending "+records.size()+" records for indexing: "+e.getMessage()
+					 +", records spooled to file: "+spool.getFile().getAbsolutePath());
+			spool.append(records);
+		}
+		
+	}
+	
+	/**
+	 * Buffer of records waiting to be sent to the Solr server,
+	 * which only waits for its own messages when flushed, and only reports their errors.
+	 */
+	private class Buffer implements RecordConsumer {
+		
+		/**
+		 * Records waiting to be sent to the Solr server.
+		 */
+		private final List<Record> records = new ArrayList<Record>();
+		
+		/**
+		 * Approximate size of the buffered records, in bytes.
+		 */
+		private long size = 0L;
+		
+		private ScheduledFuture<?> scheduledFlush;
+		
+		/**
+		 * Number of messages being sent to the Solr server.
+		 */
+		private int sending = 0;
+		
+		/**
+		 * Error raised while sending records of this buffer from the timer thread,
+		 * reported to the caller at the next invocation of {@link #consume(Record)} or {@link #flush()}.
+		 */
+		private Exception timerException;
+		
+		public void consume(final Record record) throws Exception {
+			
+			final List<Record> drained;
+			synchronized (this) {
+				
+				this.checkTimer();
+				
+				records.add(record);
+				size += estimateSize(record);
+				
+				if (records.size()>=maxDocs || (maxBytes>0 && size>=maxBytes)) {
+					drained = this.drain();
+				} else {
+					if (records.size()==1 && maxLatency>0) this.scheduleFlush();
+					return;
+				}
+				
+			}
+			this.send(drained);
+			
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * This implementation sends all buffered records to the Solr server, 
+		 * waits for the records of this buffer being sent by other threads,
+		 * and then commits them if so required by the commit policy.
+		 */
+		public void flush() throws Exception {
+			
+			final List<Record> drained;
+			synchronized (this) {
+				drained = this.drain();
+			}
+			this.send(drained);
+			
+			synchronized (this) {
+				while (sending>0) this.wait();
+				this.checkTimer();
+			}
+			SolrIndexer.super.flush();
+			
+		}
+		
+		/**
+		 * Method to remove all records from the buffer (must be invoked while holding this buffer's monitor).
+		 * @return
+		 */
+		private List<Record> drain() {
+			
+			if (scheduledFlush!=null) {
+				scheduledFlush.cancel(false);
+				scheduledFlush = null;
+			}
+			
+			final List<Record> drained = new ArrayList<Record>(records);
+			records.clear();
+			size = 0L;
+			if (!drained.isEmpty()) sending++;
+			return drained;
+			
+		}
+		
+		/**
+		 * Method to send records removed from the buffer, and signal their completion.
+		 * @param drained
+		 * @throws Exception
+		 */
+		private void send(final List<Record> drained) throws Exception {
+			
+			if (drained.isEmpty()) return;
+			
+			try {
+				SolrIndexer.this.send(drained);
+			} finally {
+				this.sent();
+			}
+			
+		}
+		
+		/**
+		 * Method to signal that a message of this buffer has been sent (or has failed).
+		 */
+		private synchronized void sent() {
+			
+			sending--;
+			this.notifyAll();
+			
+		}
+		
+		/**
+		 * Method to schedule the sending of the buffered records after the maximum latency has expired.
+		 */
+		private void scheduleFlush() {
+			
+			scheduledFlush = timer.schedule(new Runnable() {
+				public void run() {
+					final List<Record> drained;
+					synchronized (Buffer.this) {
+						drained = drain();
+					}
+					if (drained.isEmpty()) return;
+					// the error is recorded before the message is signalled, so that a concurrent flush reports it
+					try {
+						SolrIndexer.this.send(drained);
+					} catch(Exception e) {
+						LOG.error("Error sending buffered records: "+e.getMessage());
+						synchronized (Buffer.this) {
+							if (timerException==null) timerException = e;
+						}
+					} finally {
+						sent();
+					}
+				}
+			}, maxLatency, TimeUnit.MILLISECONDS);
+			
+		}
+		
+		/**
+		 * Method to re-throw any error that occurred while sending records of this buffer from the timer thread.
+		 * @throws Exception
+		 */
+		private void checkTimer() throws Exception {
+			
+			if (timerException!=null) {
+				final Exception e = timerException;
+				timerException = null;
+				throw e;
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Method to estimate the size of the XML encoding of a record,
+	 * without actually serializing it (nor building its map of fields).
+	 * @param record
+	 * @return
+	 */
+	private long estimateSize(final Record record) {
+		
+		return FIELD_OVERHEAD + (record.getId()!=null ? record.getId().length() : 0) + record.getFieldsLength(FIELD_OVERHEAD);
+		
+	}
+
+}
@@ -1,61 +1,120 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.impl.solr;
-
-import java.net.URL;
-import java.util.Arrays;
-import java.util.List;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Component;
-
-import esg.harvest.core.Record;
-
-/**
- * Implementation of {@link SolrClient} that sends (skeleton) records to a Solr server for removal.
- */
-@Component("scrabber")
-public class SolrScrabber extends SolrClient {
-						
-	/**
-	 * Constructor delegates to superclass.
-	 * @param url
-	 */
-	@Autowired
-	public SolrScrabber(final @Value("${esg.harvest.solr.url}") URL url) {
-		super(url);
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	public void consume(final Record record) throws Exception {
-		LOG.debug("In SolrScrabber consume(record)");
-		final List<String> ids = Arrays.asList(new String[]{record.getId()} );
-		final String xml = messageBuilder.buildDeleteMessage(ids, true);
-		final URL postUrl = solrUrlBuilder.buildUpdateUrl(true); // commit=true
-		LOG.debug("postUrl: " + postUrl);
-		
-		if (LOG.isDebugEnabled()) LOG.debug("Posting record:"+xml+" to URL:"+postUrl.toString());
-		httpClient.doPostXml(postUrl, xml);
-		
-	}
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import esg.harvest.core.Record;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.RetryPolicy;
+
+/**
+ * Implementation of {@link SolrClient} that sends (skeleton) records to a Solr server for removal.
+ * Record identifiers are buffered and sent as a single &lt;delete&gt; message,
+ * which also removes all their children records through one combined <i>parent_id</i> query,
+ * whenever the buffer reaches the maximum number of identifiers.
+ * All remaining identifiers are sent when the consumer is flushed at the end of a crawl.
+ */
+@Component("xmlScrabber")
+public class SolrScrabber extends SolrClient {
+	
+	/**
+	 * Maximum number of record identifiers removed by a single message.
+	 */
+	private final int maxIds;
+	
+	/**
+	 * Identifiers of records waiting to be removed.
+	 */
+	private final List<String> buffer = new ArrayList<String>();
+						
+	/**
+	 * Constructor delegates to superclass and configures the identifiers buffer.
+	 * @param url
+	 * @param commitPolicy
+	 * @param httpClient
+	 * @param retryPolicy
+	 * @param maxIds
+	 */
+	@Autowired
+	public SolrScrabber(final @Value("${esg.harvest.solr.url}") URL url, 
+			            final CommitPolicy commitPolicy,
+			            final HttpClient httpClient,
+			            final RetryPolicy retryPolicy,
+			            final @Value("${esg.harvest.solr.delete.batch}") int maxIds) {
+		super(url, commitPolicy, httpClient, retryPolicy);
+		Assert.isTrue(maxIds>0, "The maximum number of identifiers per message must be positive");
+		this.maxIds = maxIds;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void consume(final Record record) throws Exception {
+		
+		buffer.add(record.getId());
+		if (buffer.size()>=maxIds) this.send();
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation sends all buffered identifiers to the Solr server, before committing the deletions.
+	 * Note that deletions are also committed when the policy relies on the "commitWithin" directive,
+	 * since that directive is not supported by &lt;delete&gt; messages.
+	 */
+	@Override
+	public synchronized void flush() throws Exception {
+		
+		this.send();
+		if (commitPolicy.isCommitRequiredOnFlush() || commitPolicy.getCommitWithin()>0) this.commit();
+		
+	}
+	
+	/**
+	 * Method to send all buffered identifiers as a single message.
+	 * @throws Exception
+	 */
+	private void send() throws Exception {
+		
+		if (buffer.isEmpty()) return;
+		
+		final List<String> ids = new ArrayList<String>(buffer);
+		buffer.clear();
+		
+		if (LOG.isInfoEnabled()) LOG.info("Sending "+ids.size()+" records for removal");
+		this.update(new HttpClient.PostBody() {
+			public void writeTo(final OutputStream out) throws IOException {
+				messageWriter.writeDeleteMessage(ids, out);
+			}
+		}, ids.size());
+		
+	}
+
+}
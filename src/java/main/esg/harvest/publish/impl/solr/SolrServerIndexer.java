@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.springframework.util.Assert;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Abstract implementation of {@link RecordConsumer} that indexes records through a SolrJ {@link SolrServer}.
+ * Records are converted to {@link SolrInputDocument}s and sent in batches of up to a maximum number of documents,
+ * all remaining documents being sent when the consumer is flushed at the end of a crawl.
+ * Documents are committed according to the configured {@link CommitPolicy}.
+ * This class is thread-safe, and several threads can send update requests concurrently.
+ * Specific sub-classes define how the {@link SolrServer} connects to the Solr index.
+ */
+public abstract class SolrServerIndexer implements RecordConsumer {
+	
+	protected final Log LOG = LogFactory.getLog(this.getClass());
+	
+	/**
+	 * The SolrJ server used to send the documents.
+	 */
+	protected final SolrServer solrServer;
+	
+	/**
+	 * Policy deciding when the documents sent to the Solr server are committed.
+	 */
+	protected final CommitPolicy commitPolicy;
+	
+	/**
+	 * Maximum number of documents sent to the Solr server in a single request.
+	 */
+	private final int maxDocs;
+	
+	/**
+	 * Documents waiting to be sent to the Solr server.
+	 */
+	private final List<SolrInputDocument> buffer = new ArrayList<SolrInputDocument>();
+	
+	/**
+	 * Flag indicating that documents may have been sent to the Solr server since the last commit.
+	 */
+	private volatile boolean uncommitted = false;
+	
+	/**
+	 * Number of update requests being processed.
+	 */
+	private int sending = 0;
+	
+	/**
+	 * Constructor is invoked by sub-classes with a fully configured {@link SolrServer}.
+	 * @param solrServer
+	 * @param commitPolicy
+	 * @param maxDocs
+	 */
+	protected SolrServerIndexer(final SolrServer solrServer, final CommitPolicy commitPolicy, final int maxDocs) {
+		Assert.isTrue(maxDocs>0, "The maximum number of documents per request must be positive");
+		this.solrServer = solrServer;
+		this.commitPolicy = commitPolicy;
+		this.maxDocs = maxDocs;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This method can be invoked concurrently by several threads:
+	 * update requests are processed outside of any lock.
+	 */
+	public void consume(final Record record) throws Exception {
+		
+		this.checkErrors();
+		
+		final SolrInputDocument doc = toSolrInputDocument(record);
+		final List<SolrInputDocument> docs;
+		synchronized (this) {
+			buffer.add(doc);
+			if (buffer.size()<maxDocs) return;
+			docs = this.drainBuffer();
+		}
+		this.send(docs);
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation sends all buffered documents, waits until the Solr server has received them
+	 * (including the documents sent by other threads), and commits them if so required by the commit policy.
+	 */
+	public void flush() throws Exception {
+		
+		final List<SolrInputDocument> docs;
+		synchronized (this) {
+			docs = this.drainBuffer();
+		}
+		this.send(docs);
+		
+		synchronized (this) {
+			while (sending>0) this.wait();
+		}
+		this.waitForUpdates();
+		this.checkErrors();
+		
+		if (uncommitted && commitPolicy.isCommitRequiredOnFlush()) {
+			if (LOG.isInfoEnabled()) LOG.info("Committing updates");
+			uncommitted = false;
+			final UpdateRequest request = new UpdateRequest();
+			request.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true);
+			try {
+				this.process(request);
+			} catch(Exception e) {
+				uncommitted = true;
+				throw e;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to execute an update request.
+	 * This implementation sends the request to the {@link SolrServer}.
+	 * @param request
+	 * @throws Exception
+	 */
+	protected void process(final UpdateRequest request) throws Exception {
+		request.process(solrServer);
+	}
+	
+	/**
+	 * Method to wait until all documents handed to the {@link SolrServer} have been received by the Solr index.
+	 * This implementation does nothing, as the {@link SolrServer} is assumed to send documents synchronously.
+	 */
+	protected void waitForUpdates() {}
+	
+	/**
+	 * Method to report any error that occurred while sending documents asynchronously.
+	 * This implementation does nothing, as the {@link SolrServer} is assumed to report errors synchronously.
+	 * @throws Exception
+	 */
+	protected void checkErrors() throws Exception {}
+	
+	/**
+	 * Method to remove all documents from the buffer (must be invoked while holding this instance's monitor).
+	 * @return
+	 */
+	private List<SolrInputDocument> drainBuffer() {
+		
+		final List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(buffer);
+		buffer.clear();
+		if (!docs.isEmpty()) sending++;
+		return docs;
+		
+	}
+	
+	/**
+	 * Method to send documents removed from the buffer as a single update request.
+	 * @param docs
+	 * @throws Exception
+	 */
+	private void send(final List<SolrInputDocument> docs) throws Exception {
+		
+		if (docs.isEmpty()) return;
+		
+		try {
+			
+			final UpdateRequest request = new UpdateRequest();
+			request.add(docs);
+			
+			final long commitWithin = commitPolicy.getCommitWithin();
+			if (commitWithin>0) request.setCommitWithin((int)Math.min(commitWithin, Integer.MAX_VALUE));
+			final boolean commit = commitPolicy.isCommitRequired(docs.size());
+			if (commit) request.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true);
+			
+			if (LOG.isInfoEnabled()) LOG.info("Sending "+docs.size()+" records for indexing");
+			this.process(request);
+			if (!commit) uncommitted = true;
+			
+		} finally {
+			synchronized (this) {
+				sending--;
+				this.notifyAll();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to convert a {@link Record} into a {@link SolrInputDocument},
+	 * with the same fields as the corresponding Solr XML &lt;doc&gt; element.
+	 * Note that null values are not included.
+	 * @param record
+	 * @return
+	 */
+	public static SolrInputDocument toSolrInputDocument(final Record record) {
+		
+		final SolrInputDocument doc = new SolrInputDocument();
+		if (record.getId()!=null) doc.addField(SolrXmlPars.FIELD_ID, record.getId());
+		for (final Map.Entry<String, List<String>> field : record.getFields().entrySet()) {
+			for (final String value : field.getValue()) {
+				if (value!=null) doc.addField(field.getKey(), value);
+			}
+		}
+		return doc;
+		
+	}
+
+}
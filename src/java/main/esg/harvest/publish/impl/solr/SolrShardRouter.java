@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.BufferedRecordConsumer;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Implementation of {@link RecordConsumer} that routes each record to one of several Solr shards,
+ * each served by its own consumer (with its own URL builder and buffer).
+ * The shard is selected by a stable hash of the record's routing key, which is the identifier of the parent record
+ * for records that have one (i.e. file records), and the record's own identifier otherwise:
+ * hence a dataset and all its files are indexed on the same shard, where the dataset's removal
+ * also removes its files through the <i>parent_id</i> query.
+ * Note that a file record that is removed on its own must carry its parent identifier to be routed to the right shard.
+ */
+public abstract class SolrShardRouter implements BufferedRecordConsumer {
+	
+	protected final Log LOG = LogFactory.getLog(this.getClass());
+	
+	/**
+	 * Consumers for each shard, in the configured order.
+	 */
+	private final List<RecordConsumer> shards;
+	
+	protected SolrShardRouter(final List<RecordConsumer> shards) {
+		Assert.notEmpty(shards, "At least one Solr shard must be configured");
+		this.shards = Collections.unmodifiableList(new ArrayList<RecordConsumer>(shards));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation forwards the record to the consumer for its shard.
+	 */
+	public void consume(final Record record) throws Exception {
+		
+		shards.get(getShard(record, shards.size())).consume(record);
+		
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation flushes all shards, even if some of them fail,
+	 * and then re-throws the first error.
+	 */
+	public void flush() throws Exception {
+		
+		Exception error = null;
+		for (final RecordConsumer shard : shards) {
+			try {
+				shard.flush();
+			} catch(Exception e) {
+				LOG.error("Error flushing Solr shard: "+e.getMessage());
+				if (error==null) error = e;
+			}
+		}
+		if (error!=null) throw error;
+		
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation routes records to a new buffer of each shard's consumer (if it supports buffers).
+	 */
+	public RecordConsumer newBuffer() {
+		
+		final List<RecordConsumer> buffers = new ArrayList<RecordConsumer>();
+		for (final RecordConsumer shard : shards) {
+			buffers.add(shard instanceof BufferedRecordConsumer ? ((BufferedRecordConsumer)shard).newBuffer() : shard);
+		}
+		return new SolrShardRouter(buffers) {};
+		
+	}
+	
+	public List<RecordConsumer> getShards() {
+		return shards;
+	}
+	
+	/**
+	 * Method to select the shard for a record.
+	 * @param record
+	 * @param numberOfShards
+	 * @return the shard index, between 0 and numberOfShards-1
+	 */
+	public static int getShard(final Record record, final int numberOfShards) {
+		
+		return getShard(getRoutingKey(record), numberOfShards);
+		
+	}
+	
+	/**
+	 * Method to select the shard for a routing key,
+	 * using a hash function that does not depend on the JVM or on the number of crawls.
+	 * @param key
+	 * @param numberOfShards
+	 * @return the shard index, between 0 and numberOfShards-1
+	 */
+	public static int getShard(final String key, final int numberOfShards) {
+		
+		if (numberOfShards==1) return 0;
+		final CRC32 crc = new CRC32();
+		try {
+			crc.update(key.getBytes("UTF-8"));
+		} catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return (int)(crc.getValue() % numberOfShards);
+		
+	}
+	
+	/**
+	 * Method to return the key used to route a record: its parent identifier if available, its own identifier otherwise.
+	 * @param record
+	 * @return
+	 */
+	public static String getRoutingKey(final Record record) {
+		
+		final String parentId = record.getField(SolrXmlPars.FIELD_PARENT_ID);
+		if (StringUtils.hasText(parentId)) {
+			return parentId;
+		} else {
+			Assert.notNull(record.getId(), "Records without identifier cannot be routed to a Solr shard");
+			return record.getId();
+		}
+		
+	}
+	
+	/**
+	 * Method to parse a comma-separated list of Solr base URLs.
+	 * @param urls
+	 * @return
+	 * @throws MalformedURLException
+	 */
+	public static List<URL> parseUrls(final String urls) throws MalformedURLException {
+		
+		final List<URL> list = new ArrayList<URL>();
+		for (final String url : StringUtils.commaDelimitedListToStringArray(urls)) {
+			if (StringUtils.hasText(url)) list.add(new URL(url.trim()));
+		}
+		return list;
+		
+	}
+
+}
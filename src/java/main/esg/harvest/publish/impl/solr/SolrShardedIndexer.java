@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.impl.RecordSpool;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.RetryPolicy;
+
+/**
+ * Implementation of {@link SolrShardRouter} that indexes records on several Solr shards,
+ * through one {@link SolrIndexer} for each shard.
+ * Each shard is committed according to its own {@link CommitPolicy}, built from the common configuration.
+ */
+@Component("shardedIndexer")
+@Lazy
+public class SolrShardedIndexer extends SolrShardRouter {
+	
+	/**
+	 * Constructor builds one indexer for each shard.
+	 * @param urls : comma-separated list of the Solr shards base URLs
+	 * @param commitMode
+	 * @param commitWithin
+	 * @param commitDocs
+	 * @param httpClient
+	 * @param retryPolicy
+	 * @param spool
+	 * @param maxDocs
+	 * @param maxBytes
+	 * @param maxLatency
+	 * @throws MalformedURLException
+	 */
+	@Autowired
+	public SolrShardedIndexer(final @Value("${esg.harvest.solr.shards}") String urls,
+			                  final @Value("${esg.harvest.solr.commit}") String commitMode,
+			                  final @Value("${esg.harvest.solr.commit.within}") long commitWithin,
+			                  final @Value("${esg.harvest.solr.commit.docs}") int commitDocs,
+			                  final HttpClient httpClient,
+			                  final RetryPolicy retryPolicy,
+			                  final RecordSpool spool,
+			                  final @Value("${esg.harvest.solr.batch.docs}") int maxDocs,
+			                  final @Value("${esg.harvest.solr.batch.bytes}") long maxBytes,
+			                  final @Value("${esg.harvest.solr.batch.latency}") long maxLatency) throws MalformedURLException {
+		
+		super(createIndexers(parseUrls(urls), commitMode, commitWithin, commitDocs, httpClient, retryPolicy, spool, maxDocs, maxBytes, maxLatency));
+		if (LOG.isInfoEnabled()) LOG.info("Indexing records on Solr shards: "+urls);
+		
+	}
+	
+	private static List<RecordConsumer> createIndexers(final List<URL> urls, 
+			                                           final String commitMode, final long commitWithin, final int commitDocs,
+			                                           final HttpClient httpClient, final RetryPolicy retryPolicy, final RecordSpool spool,
+			                                           final int maxDocs, final long maxBytes, final long maxLatency) {
+		
+		final List<RecordConsumer> indexers = new ArrayList<RecordConsumer>();
+		for (final URL url : urls) {
+			final CommitPolicy commitPolicy = new CommitPolicyImpl(commitMode, commitWithin, commitDocs);
+			indexers.add(new SolrIndexer(url, commitPolicy, httpClient, retryPolicy, spool, maxDocs, maxBytes, maxLatency));
+		}
+		return indexers;
+		
+	}
+
+}
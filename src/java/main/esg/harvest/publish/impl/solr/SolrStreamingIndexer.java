@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.lang.reflect.Field;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.client.solrj.impl.StreamingUpdateSolrServer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Implementation of {@link SolrServerIndexer} that sends documents to a remote Solr server 
+ * through a SolrJ {@link StreamingUpdateSolrServer}, which queues the update requests 
+ * and streams them over a configurable number of concurrent HTTP connections.
+ * Responses, commits and deletions are exchanged with the javabin codec
+ * (which requires the "/update/javabin" request handler to be configured in solrconfig.xml).
+ * Note that SolrJ 1.4 always streams the queued documents in XML format.
+ * 
+ * This bean is selected as the "indexer" by setting the property esg.harvest.indexer=streamingIndexer.
+ */
+@Component("streamingIndexer")
+@Lazy
+public class SolrStreamingIndexer extends SolrServerIndexer {
+	
+	private final ErrorTrackingSolrServer streamingServer;
+	
+	/**
+	 * Constructor builds the {@link StreamingUpdateSolrServer}.
+	 * @param url : the Solr base URL
+	 * @param commitPolicy
+	 * @param maxDocs : maximum number of documents in each queued update request
+	 * @param queueSize : maximum number of update requests waiting to be streamed
+	 * @param threadCount : number of threads (and HTTP connections) streaming the update requests
+	 * @throws MalformedURLException
+	 */
+	@Autowired
+	public SolrStreamingIndexer(final @Value("${esg.harvest.solr.url}") URL url,
+			                    final CommitPolicy commitPolicy,
+			                    final @Value("${esg.harvest.solr.batch.docs}") int maxDocs,
+			                    final @Value("${esg.harvest.solr.streaming.queue}") int queueSize,
+			                    final @Value("${esg.harvest.solr.streaming.threads}") int threadCount) throws MalformedURLException {
+		this(new ErrorTrackingSolrServer(url.toString(), queueSize, threadCount), commitPolicy, maxDocs);
+	}
+	
+	private SolrStreamingIndexer(final ErrorTrackingSolrServer streamingServer, final CommitPolicy commitPolicy, final int maxDocs) {
+		super(streamingServer, commitPolicy, maxDocs);
+		streamingServer.setRequestWriter(new BinaryRequestWriter());
+		streamingServer.setParser(new BinaryResponseParser());
+		this.streamingServer = streamingServer;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation blocks until the queue of update requests has been fully streamed.
+	 */
+	@Override
+	protected void waitForUpdates() {
+		streamingServer.blockUntilFinished();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation re-throws the first error reported by the streaming threads since the last check.
+	 */
+	@Override
+	protected void checkErrors() throws Exception {
+		
+		final Throwable error = streamingServer.getError();
+		if (error!=null) {
+			throw new Exception("Error streaming documents to Solr: "+error.getMessage(), error);
+		}
+		
+	}
+	
+	/**
+	 * Method to stop the streaming threads when the Spring context is closed.
+	 * Since SolrJ 1.4 does not expose the thread pool of {@link StreamingUpdateSolrServer},
+	 * its idle (non daemon) threads would otherwise keep the JVM alive.
+	 */
+	@PreDestroy
+	public void close() {
+		
+		streamingServer.blockUntilFinished();
+		try {
+			final Field field = StreamingUpdateSolrServer.class.getDeclaredField("scheduler");
+			field.setAccessible(true);
+			((ExecutorService)field.get(streamingServer)).shutdown();
+		} catch(Exception e) {
+			LOG.warn("Cannot shut down the streaming threads: "+e.getMessage());
+		}
+		
+	}
+	
+	/**
+	 * Subclass of {@link StreamingUpdateSolrServer} that keeps track of the errors
+	 * raised by the streaming threads, instead of just logging them.
+	 */
+	private static class ErrorTrackingSolrServer extends StreamingUpdateSolrServer {
+		
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * Not guarded by the server monitor, which is held by {@link #blockUntilFinished()} while the streaming threads report errors.
+		 */
+		private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		
+		public ErrorTrackingSolrServer(final String url, final int queueSize, final int threadCount) throws MalformedURLException {
+			super(url, queueSize, threadCount);
+		}
+		
+		@Override
+		public void handleError(final Throwable ex) {
+			super.handleError(ex);
+			error.compareAndSet(null, ex);
+		}
+		
+		/**
+		 * Method to return and clear the first error reported since the last invocation.
+		 * @return
+		 */
+		public Throwable getError() {
+			return error.getAndSet(null);
+		}
+		
+	}
+
+}
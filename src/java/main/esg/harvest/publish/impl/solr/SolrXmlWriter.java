@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.impl.solr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import esg.harvest.core.Record;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Utility class to stream Solr XML messages directly to an output stream, 
+ * without building an intermediate XML tree or string.
+ * The messages are written in compact form with UTF-8 encoding,
+ * and have the same content as the messages generated by {@link SolrXmlBuilder}.
+ * This class is thread-safe.
+ */
+public class SolrXmlWriter {
+	
+	private final static String UTF8 = "UTF-8";
+	
+	/**
+	 * Factory is thread-safe once configured.
+	 */
+	private final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+	
+	/**
+	 * Method to write an XML message to add several records,
+	 * each record being encoded as a separate &lt;doc&gt; element within the same &lt;add&gt; element.
+	 * @param records
+	 * @param commitWithin : maximum time (in milliseconds) before the records are committed, or 0 to omit the directive
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeAddMessage(final List<Record> records, final long commitWithin, final OutputStream out) throws IOException {
+		
+		try {
+			
+			final XMLStreamWriter writer = factory.createXMLStreamWriter(out, UTF8);
+			writer.writeStartDocument(UTF8, "1.0");
+			
+			// <add>
+			writer.writeStartElement(SolrXmlPars.ELEMENT_ADD);
+			if (commitWithin>0) writer.writeAttribute(SolrXmlPars.ATTRIBUTE_COMMIT_WITHIN, Long.toString(commitWithin));
+			
+			for (final Record record : records) {
+				
+				// <doc>
+				writer.writeStartElement(SolrXmlPars.ELEMENT_DOC);
+				
+				// <field name="id">...</field>
+				this.writeField(writer, SolrXmlPars.FIELD_ID, record.getId());
+				
+				// <field name="...">....</field>
+				// (for each value)
+				final Map<String, List<String>> fields = record.getFields();
+				for (final Map.Entry<String, List<String>> field : fields.entrySet()) {
+					for (final String value : field.getValue()) {
+						this.writeField(writer, field.getKey(), value);
+					}
+				}
+				
+				// </doc>
+				writer.writeEndElement();
+				
+			}
+			
+			// </add>
+			writer.writeEndElement();
+			writer.writeEndDocument();
+			writer.flush();
+			writer.close();
+			
+		} catch(XMLStreamException e) {
+			throw new IOException(e);
+		}
+		
+	}
+	
+	/**
+	 * Method to write an XML message to delete records with given ids,
+	 * together with all records that declare them as <i>parent</i> record (through a single combined query).
+	 * @param ids
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeDeleteMessage(final List<String> ids, final OutputStream out) throws IOException {
+		
+		try {
+			
+			final XMLStreamWriter writer = factory.createXMLStreamWriter(out, UTF8);
+			writer.writeStartDocument(UTF8, "1.0");
+			
+			// <delete>
+			writer.writeStartElement(SolrXmlPars.ELEMENT_DELETE);
+			
+			for (final String id : ids) {
+				
+				// <id>...</id>
+				writer.writeStartElement(SolrXmlPars.ELEMENT_ID);
+				writer.writeCharacters(id);
+				writer.writeEndElement();
+				
+			}
+			
+			// <query>parent_id:(... OR ...)</query>
+			if (!ids.isEmpty()) {
+				writer.writeStartElement(SolrXmlPars.ELEMENT_QUERY);
+				writer.writeCharacters(SolrXmlBuilder.buildParentIdQuery(ids));
+				writer.writeEndElement();
+			}
+			
+			// </delete>
+			writer.writeEndElement();
+			writer.writeEndDocument();
+			writer.flush();
+			writer.close();
+			
+		} catch(XMLStreamException e) {
+			throw new IOException(e);
+		}
+		
+	}
+	
+	/**
+	 * Method to write an XML message to commit all pending updates.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeCommitMessage(final OutputStream out) throws IOException {
+		
+		try {
+			
+			final XMLStreamWriter writer = factory.createXMLStreamWriter(out, UTF8);
+			writer.writeStartDocument(UTF8, "1.0");
+			writer.writeEmptyElement(SolrXmlPars.ELEMENT_COMMIT);
+			writer.writeEndDocument();
+			writer.flush();
+			writer.close();
+			
+		} catch(XMLStreamException e) {
+			throw new IOException(e);
+		}
+		
+	}
+	
+	/**
+	 * Method to write a single field value.
+	 * Note that null values are not written.
+	 */
+	private void writeField(final XMLStreamWriter writer, final String name, final String value) throws XMLStreamException {
+		
+		if (value!=null) {
+			writer.writeStartElement(SolrXmlPars.ELEMENT_FIELD);
+			writer.writeAttribute(SolrXmlPars.ATTRIBUTE_NAME, name);
+			writer.writeCharacters(value);
+			writer.writeEndElement();
+		}
+		
+	}
+
+}
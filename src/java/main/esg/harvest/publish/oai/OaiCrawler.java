@@ -1,161 +1,678 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.oai;
-
-import java.net.URI;
-import java.util.List;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.Namespace;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.stereotype.Service;
-
-import esg.harvest.publish.api.MetadataRepositoryCrawler;
-import esg.harvest.publish.api.MetadataRepositoryType;
-import esg.harvest.publish.xml.MetadataHandler;
-import esg.harvest.publish.api.RecordProducer;
-
-import esg.harvest.utils.XmlParser;
-import esg.harvest.utils.HttpClient;
-
-import esg.harvest.core.Record;
-
-/**
- * Implementation of {@link MetadataRepositoryCrawler} that acts as an OAI Harvester to retrieve records from an OAI Repository.
- */
-@Service
-public class OaiCrawler implements MetadataRepositoryCrawler  {
-	
-	private final MetadataHandler metadataHandler;
-	
-	private final Log LOG = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-	public OaiCrawler(final @Qualifier("metadataHandlerDifImpl") MetadataHandler metadataHandler) {//final @Qualifier("metadataHandlerDifImpl") MetadataHandler metadataHandler) {
-		//LOG.debug("CONSTRUCTOR: OaiCrawler");
-		
-		this.metadataHandler = metadataHandler;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-
-	public void crawl(final URI uri, final boolean recursive, final RecordProducer callback) throws Exception {//, final RecordProducer callback)  {  //) 
-		//LOG.debug("In OaiCrawler crawl()");
-		
-	
-		// parse XML document
-		final String xml = (new HttpClient()).doGet( uri.toURL() );
-		final XmlParser xmlParser = new XmlParser(false);
-		final Document doc = xmlParser.parseString(xml);
-		
-		// process XML
-		this.parseDocument(doc, callback);
-		/**/	
-		//LOG.debug("End OaiCrawler crawl()");
-		
-	}
-	
-
-	/**
-	 * {@inheritDoc}
-	 */
-	public MetadataRepositoryType supports() {
-		return MetadataRepositoryType.OAI;
-	}
-	
-	/**
-	 * Method to parse a single OAI document, composed of many OAI records.
-	 * @param doc
-	 * @throws Exception
-	 */
-	
-	private void parseDocument(final Document doc, final RecordProducer callback) throws Exception {
-		
-		//LOG.debug("In OaiCrawler parseDocument(doc,callback)");
-		
-		// parse OAI response header
-		// <OAI-PMH xmlns="http://www.openarchives.org/OAI/2.0/"
-		//	 xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
-		//	 xsi:schemaLocation="http://www.openarchives.org/OAI/2.0/
-		//	 http://www.openarchives.org/OAI/2.0/OAI-PMH.xsd">
-		//	<responseDate>2010-05-10T14:20:15Z</responseDate>
-		//	<request verb="ListRecords" metadataPrefix="oai_dif">http://mercury.ornl.gov/oai/provider</request>
-		final Element root = doc.getRootElement();
-		final Namespace ns = root.getNamespace();
-		
-		
-		// loop over OAI records
-		// <ListRecords>
-		final Element listRecordsEl = root.getChild("ListRecords", ns);
-		for (final Object recordEl : listRecordsEl.getChildren("record", ns) ) {
-			this.parseRecord( (Element)recordEl, callback );
-		}
-	}
-	
-	
-	/**
-	 * Method to parse a single OAI record,
-	 * which contains embedded metadata of some specific format.
-	 * @param recordEl
-	 * @return
-	 */
-	
-	private void parseRecord(final Element recordEl, final RecordProducer callback) throws Exception {
-		//LOG.debug("In OaiCrawler parseRecord(recordEl,callback)");
-		
-		//
-		 // Parse record header.
-		 // <header>
-      	 //   <identifier>oai:daac.ornl.gov:ornldaac_1</identifier>
-         //   <datestamp>2009-07-21T22:28:58Z</datestamp>
-	     // </header>
-		 //
-		final Namespace ns = recordEl.getNamespace();
-		final Element headerEl = recordEl.getChild("header", ns);
-		final String status = headerEl.getAttributeValue("status");
-		final Element identifierEl = headerEl.getChild("identifier", ns);
-		final String oaiIdentfier = identifierEl.getTextNormalize();
-		final Element datestampEl = headerEl.getChild("datestamp", ns);
-		final String datestamp = datestampEl.getTextNormalize();
-		
-		if (LOG.isInfoEnabled()) LOG.info("OAI Record identifier="+oaiIdentfier+" date stamp="+datestamp+" status="+status);
-		
-		final Element metadataEl = recordEl.getChild("metadata", ns);
-		if (metadataEl!=null) {
-			for (final Object rootEl : metadataEl.getChildren()) {
-	
-				// parse detailed metadata with specific handler
-				final List<Record> records = metadataHandler.parse( (Element)rootEl );
-				
-				// index resulting Solr records
-				for (final Record record : records) callback.notify(record);
-			
-			}
-		}		
-	}
-	
-	
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.oai;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.MetadataRepositoryCrawler;
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.xml.MetadataHandler;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.api.RecordProducer;
+
+import esg.harvest.utils.XmlParser;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.PrefetchPolicy;
+import esg.harvest.utils.Prefetcher;
+import esg.harvest.utils.RetryPolicy;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+
+/**
+ * Implementation of {@link MetadataRepositoryCrawler} that acts as an OAI Harvester to retrieve records from an OAI Repository.
+ * Incomplete lists are harvested page by page, following the resumption tokens until the list is complete:
+ * each page is streamed from the HTTP response, one record at a time, so that records are notified while the page
+ * is still being downloaded, and all records are notified before the next page is requested, 
+ * and requests rejected for flow control (503 with Retry-After) are retried after the requested delay.
+ * While publishing, the resumption token is periodically checkpointed (after the records harvested so far have been flushed),
+ * so that an interrupted harvest resumes from the last checkpointed page.
+ * Additionally, publishing harvests are selective: the date of each complete ListRecords harvest is stored 
+ * for the list (provider, metadata format and set), and the next harvest of the same list only requests the records 
+ * changed since that date (lists bounded by an 'until' date are always harvested in full).
+ * The identifiers of the search records created from each OAI record are stored as well, so that records reported 
+ * with status "deleted" (or search records no longer created from an updated OAI record) are sent to the scrabber
+ * for removal within the same harvest: a single selective harvest both adds and removes records.
+ * 
+ * If so configured (see {@link PrefetchPolicy}), the next pages of a list are fetched ahead while the current page 
+ * is being parsed: each page is then retrieved as a whole, and the resumption token for the next page is located 
+ * at the end of its content, without waiting for the page to be parsed.
+ * Note that prefetching trades memory for latency: up to depth+1 whole pages are then held in memory at once, 
+ * instead of a single record of the streamed page, which is why OAI prefetching is disabled by default.
+ */
+@Service
+public class OaiCrawler implements MetadataRepositoryCrawler  {
+	
+	private final MetadataHandler metadataHandler;
+	
+	/**
+	 * Client used to retrieve the remote metadata.
+	 */
+	private final HttpClient httpClient;
+	
+	/**
+	 * Policy for retrying failed requests.
+	 */
+	private final RetryPolicy retryPolicy;
+	
+	/**
+	 * Store for the checkpointed resumption tokens.
+	 */
+	private final OaiHarvestStateStore stateStore;
+	
+	/**
+	 * Number of pages between checkpoints (0 to disable checkpoints).
+	 */
+	private final int checkpointPages;
+	
+	/**
+	 * Consumer that removes the records of deleted OAI records from the index (null to ignore deletions).
+	 */
+	private final RecordConsumer scrabber;
+	
+	/**
+	 * Store for the identifiers of the search records created from each OAI record.
+	 */
+	private final OaiIdentifierStore identifierStore;
+	
+	/**
+	 * Policy for fetching pages ahead of the harvest.
+	 */
+	private final PrefetchPolicy prefetchPolicy;
+	
+	/**
+	 * Pattern matching the resumption token at the end of a page.
+	 */
+	private final static Pattern TOKEN_PATTERN = Pattern.compile("<(?:[\\w-]+:)?resumptionToken(?:\\s[^>]*)?>([^<]+)</(?:[\\w-]+:)?resumptionToken>");
+	
+	/**
+	 * Maximum length of the page tail where the resumption token is looked for.
+	 */
+	private final static int TOKEN_TAIL_LENGTH = 8192;
+	
+	private final Log LOG = LogFactory.getLog(this.getClass());
+	
+	/**
+	 * Constructor for a crawler that neither retries requests, checkpoints harvests nor removes deleted records.
+	 * @param metadataHandler
+	 * @param httpClient
+	 */
+	public OaiCrawler(final MetadataHandler metadataHandler, final HttpClient httpClient) {
+		this(metadataHandler, httpClient, new RetryPolicy(), new OaiHarvestStateStore(), 0, null, new OaiIdentifierStore(), new PrefetchPolicy());
+	}
+	
+	@Autowired
+	public OaiCrawler(final @Qualifier("metadataHandlerDifImpl") MetadataHandler metadataHandler,
+	                  final HttpClient httpClient,
+	                  final RetryPolicy retryPolicy,
+	                  final OaiHarvestStateStore stateStore,
+	                  final @Value("${esg.harvest.oai.checkpoint.pages}") int checkpointPages,
+	                  final @Qualifier("scrabber") RecordConsumer scrabber,
+	                  final OaiIdentifierStore identifierStore,
+	                  final @Qualifier("oaiPrefetchPolicy") PrefetchPolicy prefetchPolicy) {
+		//LOG.debug("CONSTRUCTOR: OaiCrawler");
+		
+		this.metadataHandler = metadataHandler;
+		this.httpClient = httpClient;
+		this.retryPolicy = retryPolicy;
+		this.stateStore = stateStore;
+		this.checkpointPages = checkpointPages;
+		this.scrabber = scrabber;
+		this.identifierStore = identifierStore;
+		this.prefetchPolicy = prefetchPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+
+	public void crawl(final CrawlContext context, final RecordProducer callback) throws Exception {
+		//LOG.debug("In OaiCrawler crawl()");
+		
+		final URI uri = context.getUri();
+		final boolean incremental = context.isIncremental();
+		
+		// checkpoints are used only while publishing
+		final boolean checkpoint = incremental && checkpointPages>0 && stateStore.isEnabled();
+		final String key = uri.toString();
+		
+		// selective harvest: request only the records changed since the last complete harvest of the same list
+		// (lists bounded by an 'until' date are always harvested in full, since later records are not requested)
+		final Map<String, String> parameters = getParameters(uri);
+		final boolean selective = incremental && stateStore.isEnabled() && isHttp(uri)
+		                          && "ListRecords".equals(parameters.get("verb")) && parameters.get("metadataPrefix")!=null
+		                          && !parameters.containsKey("from") && !parameters.containsKey("until") 
+		                          && !parameters.containsKey("resumptionToken");
+		final String list = getListKey(uri, parameters);
+		String from = selective ? stateStore.getHarvestDate(list) : null;
+		URI firstURI = from!=null ? getSelectiveURI(uri, from) : uri;
+		if (from!=null && LOG.isInfoEnabled()) LOG.info("Harvesting OAI records changed since: "+from);
+		
+		// resume an interrupted harvest
+		String token = checkpoint ? stateStore.getResumptionToken(key) : null;
+		boolean resumed = token!=null;
+		String responseDate = resumed ? stateStore.getResponseDate(key) : null;
+		if (resumed && LOG.isInfoEnabled()) LOG.info("Resuming OAI harvest: "+uri+" from resumption token: "+token);
+		
+		URI pageURI = resumed ? getResumptionURI(uri, token) : firstURI;
+		final Harvest harvest = new Harvest(context, callback);
+		harvest.prefetcher = isHttp(uri) ? prefetchPolicy.newPrefetcher() : null;
+		int pages = 0;
+		try {
+			while (pageURI!=null) {
+				
+				// stream XML document, processing its records
+				final Page page = this.getPage(pageURI, harvest);
+				
+				// the checkpointed token may have expired: restart from the first page
+				final String error = page.errorCode;
+				if (resumed && "badResumptionToken".equals(error)) {
+					LOG.warn("Checkpointed resumption token rejected, restarting OAI harvest: "+uri);
+					stateStore.setResumptionToken(key, null, null);
+					resumed = false;
+					responseDate = null;
+					pageURI = firstURI;
+					continue;
+				}
+				
+				// providers that only support day granularity reject datestamps with a time
+				if (!resumed && pages==0 && from!=null && from.length()>10 && "badArgument".equals(error)) {
+					from = from.substring(0, 10);
+					LOG.warn("Datestamp granularity rejected, harvesting OAI records changed since: "+from);
+					firstURI = getSelectiveURI(uri, from);
+					pageURI = firstURI;
+					continue;
+				}
+				resumed = false;
+				if (error!=null && !"noRecordsMatch".equals(error)) {
+					throw new Exception("OAI error: "+error+": "+page.errorMessage);
+				}
+				if (responseDate==null) responseDate = page.responseDate;
+				
+				final String previousToken = token;
+				token = page.token;
+				pages++;
+				context.addDocument();
+				if (token!=null && !isHttp(uri)) {
+					// document serialized to the file system: the list cannot be resumed
+					LOG.warn("Ignoring resumption token of non-HTTP document: "+uri);
+					token = null;
+				} else if (token!=null && token.equals(previousToken)) {
+					throw new Exception("OAI provider returned the same resumption token twice: "+token);
+				}
+				pageURI = token!=null ? getResumptionURI(uri, token) : null;
+				
+				// checkpoint the next page, once all records harvested so far have been indexed
+				if (checkpoint && token!=null && pages%checkpointPages==0) {
+					this.flush(harvest);
+					stateStore.setResumptionToken(key, token, responseDate);
+				}
+				
+			}
+		} finally {
+			if (harvest.prefetcher!=null) harvest.prefetcher.close();
+		}
+		if (LOG.isInfoEnabled()) LOG.info("Harvested "+pages+" OAI pages from: "+uri+", removed records: "+harvest.removed);
+		// the records must be indexed (or removed) before the harvest state is updated
+		if (selective || identifierStore.isEnabled() || harvest.removed>0) this.flush(harvest);
+		if (checkpoint) stateStore.setResumptionToken(key, null, null);
+		
+		// the next harvest will request the records changed since this harvest started, once all records have been indexed
+		if (selective && responseDate!=null) {
+			stateStore.setHarvestDate(list, responseDate);
+		}
+		/**/	
+		//LOG.debug("End OaiCrawler crawl()");
+		
+	}
+	
+	/**
+	 * Method to flush the records harvested so far, and the deletions, 
+	 * before storing the identifiers of the corresponding search records:
+	 * if the harvest fails before, the stored identifiers still reference the search records previously created
+	 * (so that they are removed by a later harvest).
+	 * @param harvest
+	 * @throws Exception
+	 */
+	private void flush(final Harvest harvest) throws Exception {
+		
+		harvest.callback.flush();
+		if (harvest.removed>harvest.flushed) {
+			scrabber.flush();
+			harvest.flushed = harvest.removed;
+		}
+		identifierStore.update(harvest.recordIds);
+		harvest.recordIds.clear();
+		
+	}
+	
+	/**
+	 * Method to retrieve and stream an OAI response, processing each of its records as soon as it is parsed.
+	 * Only the HTTP request is retried, if it fails with a transient error or is rejected for flow control:
+	 * errors raised while the response is streamed, or by the consumers of its records, are propagated as such,
+	 * since the records already notified cannot be taken back.
+	 * @param uri
+	 * @param harvest
+	 * @return
+	 * @throws Exception
+	 */
+	private Page getPage(final URI uri, final Harvest harvest) throws Exception {
+		
+		// parse the page as a whole, while the next pages are fetched ahead
+		if (harvest.prefetcher!=null) {
+			HttpClient.ConditionalResponse response = harvest.prefetcher.take(uri);
+			if (response==null) response = this.download(uri);
+			this.prefetch(uri, response.getContent(), harvest.prefetcher, false);
+			return this.parsePage(new ByteArrayInputStream(response.getContent()), harvest);
+		}
+		
+		final InputStream in = this.fetch(uri, new Callable<InputStream>() {
+			public InputStream call() throws Exception {
+				return httpClient.doGetStream( uri.toURL() );
+			}
+		});
+		try {
+			return this.parsePage(in, harvest);
+		} finally {
+			in.close();
+		}
+		
+	}
+	
+	/**
+	 * Method to retrieve a whole OAI response, retrying the request as needed.
+	 * @param uri
+	 * @return
+	 * @throws Exception
+	 */
+	private HttpClient.ConditionalResponse download(final URI uri) throws Exception {
+		
+		return this.fetch(uri, new Callable<HttpClient.ConditionalResponse>() {
+			public HttpClient.ConditionalResponse call() throws Exception {
+				return httpClient.doGetConditional(uri.toURL(), null, null);
+			}
+		});
+		
+	}
+	
+	/**
+	 * Method to execute an HTTP request for an OAI response, retrying it as required by the retry policy.
+	 * @param uri : the requested URI (for logging)
+	 * @param request
+	 * @return
+	 * @throws Exception
+	 */
+	private <T> T fetch(final URI uri, final Callable<T> request) throws Exception {
+		
+		for (int attempt=1; ; attempt++) {
+			try {
+				return request.call();
+			} catch(Exception e) {
+				if (!retryPolicy.isRetryRequired(attempt, e)) throw e;
+				final long delay = retryPolicy.getDelay(attempt, e);
+				LOG.warn("Error retrieving URL:"+uri+" (attempt "+attempt+"): "+e.getMessage()+", retrying in "+delay+" ms");
+				if (delay>0) Thread.sleep(delay);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to start prefetching the page following a retrieved page, 
+	 * which in turn prefetches the next page once retrieved, as soon as the prefetch buffer has room for it:
+	 * the prefetched pages are kept as far ahead of the harvest as the prefetch depth allows.
+	 * Note that the resumption token found in the content is only a guess: 
+	 * if the parsed page reports a different token, the prefetched page is simply not used.
+	 * @param uri
+	 * @param content : the content of the retrieved page
+	 * @param prefetcher
+	 * @param wait : true to wait for the prefetch buffer to have room for the next page
+	 * @throws Exception
+	 */
+	private void prefetch(final URI uri, final byte[] content, final Prefetcher prefetcher, final boolean wait) throws Exception {
+		
+		// the resumption token is the last element of the list
+		final int offset = Math.max(0, content.length-TOKEN_TAIL_LENGTH);
+		final Matcher matcher = TOKEN_PATTERN.matcher(new String(content, offset, content.length-offset, "UTF-8"));
+		if (!matcher.find()) return;
+		final String token = matcher.group(1).trim().replace("&lt;", "<").replace("&gt;", ">")
+		                                     .replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+		
+		final URI nextURI = getResumptionURI(uri, token);
+		if (token.length()==0 || nextURI.equals(uri)) return;
+		prefetcher.prefetch(nextURI, new Callable<HttpClient.ConditionalResponse>() {
+			public HttpClient.ConditionalResponse call() throws Exception {
+				final HttpClient.ConditionalResponse response = download(nextURI);
+				prefetch(nextURI, response.getContent(), prefetcher, true);
+				return response;
+			}
+		}, wait);
+		
+	}
+	
+	/**
+	 * Method to build the request for the next page of an incomplete list,
+	 * which carries only the verb and the resumption token (exclusive argument).
+	 * @param uri : the URI of the first request of the list
+	 * @param token
+	 * @return
+	 * @throws Exception
+	 */
+	private static URI getResumptionURI(final URI uri, final String token) throws Exception {
+		
+		return new URI(getBaseUrl(uri)+"?verb=ListRecords&resumptionToken="+URLEncoder.encode(token, "UTF-8"));
+		
+	}
+	
+	/**
+	 * Method to restrict the first request of a list to the records changed since the given date.
+	 * @param uri : the URI of the first request of the list
+	 * @param from : the OAI datestamp
+	 * @return
+	 * @throws Exception
+	 */
+	private static URI getSelectiveURI(final URI uri, final String from) throws Exception {
+		
+		return new URI(uri.toString()+"&from="+URLEncoder.encode(from, "UTF-8"));
+		
+	}
+	
+	/**
+	 * Method to return the key identifying the records of a list, whatever the range of datestamps requested:
+	 * the base URL of the provider, followed by the (sorted) request arguments other than 'from' and 'resumptionToken'
+	 * (i.e. the verb, metadata format and set).
+	 * @param uri : the URI of the first request of the list
+	 * @param parameters : the parameters of the request
+	 * @return
+	 * @throws Exception
+	 */
+	private static String getListKey(final URI uri, final Map<String, String> parameters) throws Exception {
+		
+		final StringBuilder key = new StringBuilder(getBaseUrl(uri));
+		char separator = '?';
+		for (final String name : new TreeSet<String>(parameters.keySet())) {
+			if (name.equals("from") || name.equals("resumptionToken")) continue;
+			key.append(separator).append(URLEncoder.encode(name, "UTF-8")).append('=').append(URLEncoder.encode(parameters.get(name), "UTF-8"));
+			separator = '&';
+		}
+		return key.toString();
+		
+	}
+	
+	/**
+	 * Method to return the base URL of an OAI provider, i.e. the request URL without query.
+	 * @param uri
+	 * @return
+	 */
+	private static String getBaseUrl(final URI uri) {
+		
+		return uri.toString().replaceFirst("\\?.*$", "");
+		
+	}
+	
+	/**
+	 * Method to parse the (decoded) query parameters of an OAI request.
+	 * @param uri
+	 * @return
+	 * @throws Exception
+	 */
+	private static Map<String, String> getParameters(final URI uri) throws Exception {
+		
+		final Map<String, String> parameters = new HashMap<String, String>();
+		if (uri.getRawQuery()!=null) {
+			for (final String parameter : uri.getRawQuery().split("&")) {
+				final int i = parameter.indexOf('=');
+				if (i>0) {
+					parameters.put(URLDecoder.decode(parameter.substring(0, i), "UTF-8"), URLDecoder.decode(parameter.substring(i+1), "UTF-8"));
+				}
+			}
+		}
+		return parameters;
+		
+	}
+	
+	private static boolean isHttp(final URI uri) {
+		return "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MetadataRepositoryType supports() {
+		return MetadataRepositoryType.OAI;
+	}
+	
+	/**
+	 * Method to stream a single OAI document, composed of many OAI records:
+	 * each &lt;record&gt; subtree is built, processed and discarded before the next one is read,
+	 * so that documents of any size are parsed in constant memory.
+	 * @param in
+	 * @param harvest
+	 * @return the response date, error and resumption token of the document
+	 * @throws Exception
+	 */
+	
+	private Page parsePage(final InputStream in, final Harvest harvest) throws Exception {
+		
+		//LOG.debug("In OaiCrawler parsePage(in,harvest)");
+		
+		// <OAI-PMH xmlns="http://www.openarchives.org/OAI/2.0/"
+		//	 xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+		//	 xsi:schemaLocation="http://www.openarchives.org/OAI/2.0/
+		//	 http://www.openarchives.org/OAI/2.0/OAI-PMH.xsd">
+		//	<responseDate>2010-05-10T14:20:15Z</responseDate>
+		//	<request verb="ListRecords" metadataPrefix="oai_dif">http://mercury.ornl.gov/oai/provider</request>
+		//  <ListRecords>
+		//    <record>...</record>
+		//    <resumptionToken completeListSize="..." cursor="...">...</resumptionToken>
+		//  </ListRecords>
+		// or: <error code="noRecordsMatch">...</error>
+		final Page page = new Page();
+		final XmlParser xmlParser = new XmlParser(false);
+		final XMLStreamReader reader = xmlParser.newStreamReader(in);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next()!=XMLStreamConstants.START_ELEMENT) continue;
+				final String name = reader.getLocalName();
+				if (name.equals("record")) {
+					this.parseRecord( xmlParser.parseElement(reader), harvest );
+				} else if (name.equals("responseDate")) {
+					page.responseDate = getText(reader);
+				} else if (name.equals("error")) {
+					page.errorCode = reader.getAttributeValue(null, "code");
+					page.errorMessage = getText(reader);
+				} else if (name.equals("resumptionToken")) {
+					// note: the last page of the list contains an empty token
+					page.token = getText(reader);
+				}
+			}
+		} catch(XMLStreamException e) {
+			// report I/O errors while streaming the response as such
+			if (e.getNestedException() instanceof IOException) throw (IOException)e.getNestedException();
+			throw e;
+		} finally {
+			reader.close();
+		}
+		return page;
+		
+	}
+	
+	/**
+	 * Method to return the trimmed text of the current element of a streaming parser, or null if it is empty.
+	 */
+	private static String getText(final XMLStreamReader reader) throws XMLStreamException {
+		final String text = reader.getElementText().trim();
+		return text.length()>0 ? text : null;
+	}
+	
+	/**
+	 * Method to parse a single OAI record,
+	 * which contains embedded metadata of some specific format,
+	 * or is reported as deleted.
+	 * @param recordEl
+	 * @return
+	 */
+	
+	private void parseRecord(final Element recordEl, final Harvest harvest) throws Exception {
+		//LOG.debug("In OaiCrawler parseRecord(recordEl,callback)");
+		
+		//
+		 // Parse record header.
+		 // <header>
+      	 //   <identifier>oai:daac.ornl.gov:ornldaac_1</identifier>
+         //   <datestamp>2009-07-21T22:28:58Z</datestamp>
+	     // </header>
+		 //
+		final Namespace ns = recordEl.getNamespace();
+		final Element headerEl = recordEl.getChild("header", ns);
+		final String status = headerEl.getAttributeValue("status");
+		final Element identifierEl = headerEl.getChild("identifier", ns);
+		final String oaiIdentfier = identifierEl.getTextNormalize();
+		final Element datestampEl = headerEl.getChild("datestamp", ns);
+		final String datestamp = datestampEl.getTextNormalize();
+		
+		if (LOG.isInfoEnabled()) LOG.info("OAI Record identifier="+oaiIdentfier+" date stamp="+datestamp+" status="+status);
+		
+		final List<String> ids = new ArrayList<String>();
+		final Element metadataEl = recordEl.getChild("metadata", ns);
+		if (metadataEl!=null && !"deleted".equals(status)) {
+			for (final Object rootEl : metadataEl.getChildren()) {
+	
+				// parse detailed metadata with specific handler
+				final List<Record> records = metadataHandler.parse( (Element)rootEl, harvest.context );
+				
+				// index resulting Solr records
+				for (final Record record : records) {
+					harvest.callback.notify(record);
+					ids.add(record.getId());
+				}
+			
+			}
+		}
+		
+		// remove the search records no longer created from this OAI record
+		final List<String> previousIds = harvest.recordIds.containsKey(oaiIdentfier) ? harvest.recordIds.get(oaiIdentfier)
+				                                                                     : identifierStore.getRecordIds(oaiIdentfier);
+		for (final String id : previousIds) {
+			if (!ids.contains(id)) this.remove(id, harvest);
+		}
+		if ("deleted".equals(status) && previousIds.isEmpty() && LOG.isDebugEnabled()) {
+			LOG.debug("No search records found for deleted OAI record: "+oaiIdentfier);
+		}
+		if (identifierStore.isEnabled()) harvest.recordIds.put(oaiIdentfier, harvest.context.isIncremental() ? ids : new ArrayList<String>());
+		
+	}
+	
+	/**
+	 * Method to send a (skeleton) search record to the scrabber for removal.
+	 * @param id
+	 * @param harvest
+	 * @throws Exception
+	 */
+	private void remove(final String id, final Harvest harvest) throws Exception {
+		
+		if (scrabber==null) return;
+		if (LOG.isInfoEnabled()) LOG.info("Removing record: "+id);
+		scrabber.consume(new RecordImpl(id));
+		harvest.removed++;
+		
+	}
+	
+	/**
+	 * Class holding the state of a single harvest.
+	 */
+	private static class Harvest {
+		
+		final CrawlContext context;
+		
+		final RecordProducer callback;
+		
+		/**
+		 * Number of search records sent for removal, in total and as of the last flush.
+		 */
+		int removed = 0;
+		int flushed = 0;
+		
+		/**
+		 * Identifiers of the search records created from each OAI record harvested since the last flush,
+		 * stored once these records have been indexed (and the records no longer created removed).
+		 */
+		final Map<String, List<String>> recordIds = new LinkedHashMap<String, List<String>>();
+		
+		/**
+		 * Stage fetching pages ahead of the harvest (null if pages are not prefetched).
+		 */
+		Prefetcher prefetcher;
+		
+		Harvest(final CrawlContext context, final RecordProducer callback) {
+			this.context = context;
+			this.callback = callback;
+		}
+		
+	}
+	
+	/**
+	 * Class holding the information returned by an OAI response, besides its records.
+	 */
+	private static class Page {
+		
+		String responseDate;
+		
+		String errorCode;
+		
+		String errorMessage;
+		
+		/**
+		 * Resumption token for the next page (null if the list is complete).
+		 */
+		String token;
+		
+	}
+	
+	
+
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.oai;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Class that persists the state of OAI harvests between crawls, as a properties file:
+ * for each harvested list, the resumption token of the last checkpointed page, 
+ * so that an interrupted harvest can resume from that page;
+ * and for each list request (provider, metadata format and set), the date of the last complete harvest,
+ * so that the next harvest of the same list is restricted to the records changed since then.
+ * The file is replaced (through a temporary file) every time the state changes.
+ */
+@Component("oaiHarvestStateStore")
+public class OaiHarvestStateStore {
+	
+	private static final Log LOG = LogFactory.getLog(OaiHarvestStateStore.class);
+	
+	private final static String RESUMPTION_TOKEN = "resumptionToken.";
+	
+	private final static String RESPONSE_DATE = "responseDate.";
+	
+	private final static String HARVEST_DATE = "harvestDate.";
+	
+	/**
+	 * File holding the harvest state (null if no state is kept).
+	 */
+	private final File file;
+	
+	/**
+	 * Harvest state, loaded from file on first access.
+	 */
+	private Properties properties;
+	
+	/**
+	 * Constructor for a store that is not persisted.
+	 */
+	public OaiHarvestStateStore() {
+		this("");
+	}
+	
+	/**
+	 * Constructor configures the state file.
+	 * @param path : the path of the state file, or an empty string to disable the store
+	 */
+	@Autowired
+	public OaiHarvestStateStore(final @Value("${esg.harvest.oai.state.file}") String path) {
+		file = StringUtils.hasText(path) ? new File(path.trim()) : null;
+	}
+	
+	/**
+	 * @return true if the harvest state is kept between crawls
+	 */
+	public boolean isEnabled() {
+		return file!=null;
+	}
+	
+	/**
+	 * Method to retrieve the resumption token checkpointed while harvesting a list.
+	 * @param uri : the URI of the first request of the list
+	 * @return the token, or null if the list has no checkpoint
+	 * @throws IOException
+	 */
+	public synchronized String getResumptionToken(final String uri) throws IOException {
+		
+		return this.getProperties().getProperty(RESUMPTION_TOKEN+uri);
+		
+	}
+	
+	/**
+	 * Method to retrieve the date of the first response of a checkpointed list.
+	 * @param uri : the URI of the first request of the list
+	 * @return the OAI response date, or null if the list has no checkpoint
+	 * @throws IOException
+	 */
+	public synchronized String getResponseDate(final String uri) throws IOException {
+		
+		return this.getProperties().getProperty(RESPONSE_DATE+uri);
+		
+	}
+	
+	/**
+	 * Method to checkpoint the resumption token for the next page of a list.
+	 * @param uri : the URI of the first request of the list
+	 * @param token : the resumption token, or null to remove the checkpoint once the list is complete
+	 * @param responseDate : the date of the first response of the list
+	 * @throws IOException
+	 */
+	public synchronized void setResumptionToken(final String uri, final String token, final String responseDate) throws IOException {
+		
+		if (file==null) return;
+		this.setProperty(RESUMPTION_TOKEN+uri, token);
+		this.setProperty(RESPONSE_DATE+uri, token!=null ? responseDate : null);
+		this.save(this.getProperties());
+		
+	}
+	
+	/**
+	 * Method to retrieve the date of the last complete harvest of a list.
+	 * @param list : the request of the list, without the 'from' and 'resumptionToken' arguments
+	 *               (i.e. the provider base URL, the metadata format and the set, if any)
+	 * @return the OAI response date of the harvest, or null if the list has never been harvested
+	 * @throws IOException
+	 */
+	public synchronized String getHarvestDate(final String list) throws IOException {
+		
+		return this.getProperties().getProperty(HARVEST_DATE+list);
+		
+	}
+	
+	/**
+	 * Method to store the date of a complete harvest of a list.
+	 * @param list : the request of the list, without the 'from' and 'resumptionToken' arguments
+	 * @param responseDate : the date of the first response of the harvest
+	 * @throws IOException
+	 */
+	public synchronized void setHarvestDate(final String list, final String responseDate) throws IOException {
+		
+		if (file==null) return;
+		this.setProperty(HARVEST_DATE+list, responseDate);
+		this.save(this.getProperties());
+		
+	}
+	
+	private void setProperty(final String key, final String value) throws IOException {
+		
+		final Properties _properties = this.getProperties();
+		if (value==null) {
+			_properties.remove(key);
+		} else {
+			_properties.setProperty(key, value);
+		}
+		
+	}
+	
+	private Properties getProperties() throws IOException {
+		
+		if (properties==null) {
+			properties = new Properties();
+			if (file!=null && file.exists()) {
+				final InputStream in = new FileInputStream(file);
+				try {
+					properties.load(in);
+				} finally {
+					in.close();
+				}
+				if (LOG.isDebugEnabled()) LOG.debug("Loaded OAI harvest state from file: "+file.getAbsolutePath());
+			}
+		}
+		return properties;
+		
+	}
+	
+	private void save(final Properties _properties) throws IOException {
+		
+		if (file.getAbsoluteFile().getParentFile()!=null) file.getAbsoluteFile().getParentFile().mkdirs();
+		final File tmpFile = new File(file.getPath()+".tmp");
+		final FileOutputStream out = new FileOutputStream(tmpFile);
+		try {
+			_properties.store(out, "OAI harvest state");
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		
+		// replace the previous file
+		if (!tmpFile.renameTo(file)) {
+			if (!file.delete() || !tmpFile.renameTo(file)) {
+				throw new IOException("Cannot replace OAI harvest state file: "+file.getAbsolutePath());
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.oai;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Class that persists, as a properties file, the identifiers of the search records
+ * created from each harvested OAI record (keyed by OAI identifier).
+ * Headers of deleted OAI records only carry the OAI identifier, 
+ * so this mapping is needed to remove the corresponding search records from the index.
+ * The mapping is only updated once the corresponding records have been indexed or removed (see {@link #update(Map)}).
+ * 
+ * The file is a log: each update is appended to the file, as properties that override the previous values
+ * (an empty value removes the OAI record), so that the cost of an update does not grow with the size of the mapping.
+ * The file is compacted (i.e. rewritten with the current mapping only) when it holds too many overridden entries.
+ */
+@Component("oaiIdentifierStore")
+public class OaiIdentifierStore {
+	
+	private static final Log LOG = LogFactory.getLog(OaiIdentifierStore.class);
+	
+	/**
+	 * Separator of the record identifiers stored for an OAI identifier.
+	 */
+	private final static String SEPARATOR = "\t";
+	
+	/**
+	 * Minimum number of entries in the file before it is compacted.
+	 */
+	private final static int MIN_COMPACTION_ENTRIES = 10000;
+	
+	/**
+	 * File holding the identifiers mapping (null if no mapping is kept).
+	 */
+	private final File file;
+	
+	/**
+	 * Identifiers mapping, loaded from file on first access.
+	 */
+	private Properties properties;
+	
+	/**
+	 * Number of entries in the file, including the overridden ones.
+	 */
+	private int entries = 0;
+	
+	/**
+	 * Constructor for a store that is not persisted.
+	 */
+	public OaiIdentifierStore() {
+		this("");
+	}
+	
+	/**
+	 * Constructor configures the identifiers file.
+	 * @param path : the path of the identifiers file, or an empty string to disable the store
+	 */
+	@Autowired
+	public OaiIdentifierStore(final @Value("${esg.harvest.oai.identifiers.file}") String path) {
+		file = StringUtils.hasText(path) ? new File(path.trim()) : null;
+	}
+	
+	/**
+	 * @return true if the identifiers mapping is kept between crawls
+	 */
+	public boolean isEnabled() {
+		return file!=null;
+	}
+	
+	/**
+	 * Method to retrieve the identifiers of the search records created from an OAI record.
+	 * @param oaiIdentifier
+	 * @return the record identifiers (empty if the OAI record is not known)
+	 * @throws IOException
+	 */
+	public synchronized List<String> getRecordIds(final String oaiIdentifier) throws IOException {
+		
+		final String value = this.getProperties().getProperty(oaiIdentifier);
+		if (value==null) return Collections.emptyList();
+		return new ArrayList<String>(Arrays.asList(value.split(SEPARATOR)));
+		
+	}
+	
+	/**
+	 * Method to store the identifiers of the search records created from some OAI records, 
+	 * once these search records have been indexed (and the search records no longer created from them removed).
+	 * @param mappings : the record identifiers for each OAI identifier, or an empty list to remove the OAI record
+	 * @throws IOException
+	 */
+	public synchronized void update(final Map<String, List<String>> mappings) throws IOException {
+		
+		if (file==null || mappings.isEmpty()) return;
+		
+		final Properties _properties = this.getProperties();
+		final Properties changes = new Properties();
+		for (final Map.Entry<String, List<String>> mapping : mappings.entrySet()) {
+			final String value = StringUtils.collectionToDelimitedString(mapping.getValue(), SEPARATOR);
+			final boolean changed = value.length()>0 ? !value.equals(_properties.setProperty(mapping.getKey(), value))
+					                                 : _properties.remove(mapping.getKey())!=null;
+			if (changed) changes.setProperty(mapping.getKey(), value);
+		}
+		if (changes.isEmpty()) return;
+		
+		if (entries+changes.size() > Math.max(MIN_COMPACTION_ENTRIES, 2*_properties.size())) {
+			this.compact(_properties);
+		} else {
+			this.append(changes);
+		}
+		
+	}
+	
+	/**
+	 * Method to append entries to the file.
+	 * @param changes
+	 * @throws IOException
+	 */
+	private void append(final Properties changes) throws IOException {
+		
+		if (file.getAbsoluteFile().getParentFile()!=null) file.getAbsoluteFile().getParentFile().mkdirs();
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(toBytes(changes));
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		entries += changes.size();
+		
+	}
+	
+	/**
+	 * Method to rewrite the file with the current mapping only.
+	 * @param _properties
+	 * @throws IOException
+	 */
+	private void compact(final Properties _properties) throws IOException {
+		
+		if (file.getAbsoluteFile().getParentFile()!=null) file.getAbsoluteFile().getParentFile().mkdirs();
+		final File tmpFile = new File(file.getPath()+".tmp");
+		final FileOutputStream out = new FileOutputStream(tmpFile);
+		try {
+			_properties.store(out, "OAI record identifiers");
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		
+		// replace the previous file
+		if (!tmpFile.renameTo(file)) {
+			if (!file.delete() || !tmpFile.renameTo(file)) {
+				throw new IOException("Cannot replace OAI identifiers file: "+file.getAbsolutePath());
+			}
+		}
+		entries = _properties.size();
+		if (LOG.isDebugEnabled()) LOG.debug("Compacted OAI identifiers file: "+file.getAbsolutePath());
+		
+	}
+	
+	private Properties getProperties() throws IOException {
+		
+		if (properties==null) {
+			properties = new Properties();
+			if (file!=null && file.exists()) {
+				// count all entries of the file, including the overridden ones
+				final Properties loaded = new Properties() {
+					private static final long serialVersionUID = 1L;
+					@Override
+					public synchronized Object put(final Object key, final Object value) {
+						entries++;
+						return super.put(key, value);
+					}
+				};
+				final InputStream in = new FileInputStream(file);
+				try {
+					loaded.load(in);
+				} finally {
+					in.close();
+				}
+				// skip the OAI records removed by later entries
+				for (final String key : loaded.stringPropertyNames()) {
+					final String value = loaded.getProperty(key);
+					if (value.length()>0) properties.setProperty(key, value);
+				}
+				if (LOG.isDebugEnabled()) LOG.debug("Loaded "+properties.size()+" OAI record identifiers from file: "+file.getAbsolutePath());
+			}
+		}
+		return properties;
+		
+	}
+	
+	/**
+	 * Method to serialize properties in the file format (without comments).
+	 * @param _properties
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] toBytes(final Properties _properties) throws IOException {
+		
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		_properties.store(out, null);
+		// strip the date comment written on the first line
+		final String content = out.toString("ISO-8859-1");
+		return content.substring(content.indexOf('\n')+1).getBytes("ISO-8859-1");
+		
+	}
+
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.thredds;
+
+import thredds.catalog.InvDataset;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Variant of {@link ThreddsParserStrategy} that sends the records to a consumer while the dataset hierarchy is parsed, 
+ * rather than returning them all at once, so that datasets with any number of files are harvested 
+ * without holding all their records in memory.
+ */
+public interface StreamingThreddsParserStrategy extends ThreddsParserStrategy {
+	
+	/**
+	 * Method to parse a THREDDS dataset, sending each search record to a consumer as soon as it is complete.
+	 * Note that the record for the dataset itself is sent last, since it aggregates information from the whole hierarchy
+	 * (e.g. the total size of its files).
+	 * The consumer is not flushed by this method.
+	 * @param dataset
+	 * @param context : the state of the crawl harvesting the dataset
+	 * @param consumer : the consumer receiving the records
+	 * @throws Exception
+	 */
+	void parseDataset(InvDataset dataset, CrawlContext context, RecordConsumer consumer) throws Exception;
+
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.thredds;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Class that persists the state of the THREDDS catalogs harvested by previous crawls,
+ * so that unchanged catalogs are not parsed and indexed again:
+ * for each catalog URI, the store keeps the HTTP validators (ETag, Last-Modified) and a digest of the content, 
+ * together with the referenced catalogs and the versions of the records harvested from the catalog
+ * (keyed by the 64-bit hash of the record identifier, see {@link VersionIndex}, rather than by the identifier itself).
+ * The store is held in memory, and written to a local file (through a temporary file that replaces it)
+ * after each successful crawl.
+ */
+@Component("threddsCatalogStateStore")
+public class ThreddsCatalogStateStore {
+	
+	private static final Log LOG = LogFactory.getLog(ThreddsCatalogStateStore.class);
+	
+	/**
+	 * Identifier of the file format.
+	 */
+	private final static int MAGIC = 0x54435332; // "TCS2"
+	
+	/**
+	 * Identifier of the previous file format, where versions are keyed by record identifier (still readable).
+	 */
+	private final static int MAGIC_V1 = 0x54435331; // "TCS1"
+	
+	/**
+	 * State of a single catalog.
+	 */
+	public static class CatalogState {
+		
+		private final String etag;
+		
+		private final String lastModified;
+		
+		private final String digest;
+		
+		private final List<URI> catalogRefs;
+		
+		/**
+		 * Hashes of the identifiers of the versioned records, and their versions (in the same order).
+		 */
+		private final long[] versionHashes;
+		
+		private final long[] versions;
+		
+		public CatalogState(final String etag, final String lastModified, final String digest, 
+				            final List<URI> catalogRefs, final VersionIndex versions) {
+			this(etag, lastModified, digest, catalogRefs, versions.getHashes(), versions.getVersions());
+		}
+		
+		private CatalogState(final String etag, final String lastModified, final String digest, 
+				             final List<URI> catalogRefs, final long[] versionHashes, final long[] versions) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.digest = digest;
+			this.catalogRefs = Collections.unmodifiableList(new ArrayList<URI>(catalogRefs));
+			this.versionHashes = versionHashes;
+			this.versions = versions;
+		}
+		
+		public String getETag() {
+			return etag;
+		}
+		
+		public String getLastModified() {
+			return lastModified;
+		}
+		
+		/**
+		 * @return the digest of the catalog content
+		 */
+		public String getDigest() {
+			return digest;
+		}
+		
+		/**
+		 * @return the URIs of the catalogs referenced by this catalog
+		 */
+		public List<URI> getCatalogRefs() {
+			return catalogRefs;
+		}
+		
+		/**
+		 * Method to add the versions of the records harvested from this catalog to an index,
+		 * unless later versions are already indexed.
+		 * @param index
+		 */
+		public void addVersions(final VersionIndex index) {
+			for (int i=0; i<versions.length; i++) {
+				index.putLatest(versionHashes[i], versions[i]);
+			}
+		}
+		
+		/**
+		 * Method to return a copy of this state with new HTTP validators.
+		 * @param etag
+		 * @param lastModified
+		 * @return
+		 */
+		public CatalogState withValidators(final String etag, final String lastModified) {
+			return new CatalogState(etag, lastModified, digest, catalogRefs, versionHashes, versions);
+		}
+		
+	}
+	
+	/**
+	 * File holding the catalogs state (null if no state is kept).
+	 */
+	private final File file;
+	
+	/**
+	 * State of all catalogs, loaded from file on first access.
+	 */
+	private Map<URI, CatalogState> states;
+	
+	/**
+	 * Constructor for a store that is not persisted.
+	 */
+	public ThreddsCatalogStateStore() {
+		this("");
+	}
+	
+	/**
+	 * Constructor configures the state file.
+	 * @param path : the path of the state file, or an empty string to disable the store
+	 */
+	@Autowired
+	public ThreddsCatalogStateStore(final @Value("${esg.harvest.thredds.state.file}") String path) {
+		file = StringUtils.hasText(path) ? new File(path.trim()) : null;
+	}
+	
+	/**
+	 * @return true if the catalogs state is kept between crawls
+	 */
+	public boolean isEnabled() {
+		return file!=null;
+	}
+	
+	/**
+	 * Method to retrieve the stored state of a catalog.
+	 * @param catalogURI
+	 * @return the catalog state, or null if the catalog has not been harvested yet
+	 * @throws IOException
+	 */
+	public synchronized CatalogState get(final URI catalogURI) throws IOException {
+		
+		return this.getStates().get(catalogURI);
+		
+	}
+	
+	/**
+	 * Method to return the latest version of each record harvested from any stored catalog.
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized VersionIndex getVersions() throws IOException {
+		
+		final VersionIndex versions = new VersionIndex();
+		for (final CatalogState state : this.getStates().values()) {
+			state.addVersions(versions);
+		}
+		return versions;
+		
+	}
+	
+	/**
+	 * Method to store the state of the catalogs harvested by a crawl, and forget the state of other catalogs.
+	 * @param updated : the new state of the harvested catalogs
+	 * @param removed : the URIs of catalogs whose state must be forgotten
+	 * @throws IOException
+	 */
+	public synchronized void update(final Map<URI, CatalogState> updated, final Collection<URI> removed) throws IOException {
+		
+		if (file==null || (updated.isEmpty() && removed.isEmpty())) return;
+		
+		final Map<URI, CatalogState> _states = this.getStates();
+		for (final URI uri : removed) _states.remove(uri);
+		_states.putAll(updated);
+		this.save(_states);
+		
+	}
+	
+	private Map<URI, CatalogState> getStates() throws IOException {
+		
+		if (states==null) {
+			states = new LinkedHashMap<URI, CatalogState>();
+			if (file!=null && file.exists()) {
+				this.load(states);
+				if (LOG.isInfoEnabled()) LOG.info("Loaded state of "+states.size()+" THREDDS catalogs from file: "+file.getAbsolutePath());
+			}
+		}
+		return states;
+		
+	}
+	
+	private void load(final Map<URI, CatalogState> _states) throws IOException {
+		
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			final int magic = in.readInt();
+			if (magic!=MAGIC && magic!=MAGIC_V1) throw new IOException("Invalid THREDDS catalogs state file: "+file.getAbsolutePath());
+			final int size = in.readInt();
+			for (int i=0; i<size; i++) {
+				final URI uri = toURI(in.readUTF());
+				final String etag = readString(in);
+				final String lastModified = readString(in);
+				final String digest = in.readUTF();
+				final int numberOfRefs = in.readInt();
+				final List<URI> catalogRefs = new ArrayList<URI>(numberOfRefs);
+				for (int j=0; j<numberOfRefs; j++) catalogRefs.add(toURI(in.readUTF()));
+				final int numberOfVersions = in.readInt();
+				final long[] versionHashes = new long[numberOfVersions];
+				final long[] versions = new long[numberOfVersions];
+				for (int j=0; j<numberOfVersions; j++) {
+					versionHashes[j] = magic==MAGIC ? in.readLong() : VersionIndex.hash(in.readUTF());
+					versions[j] = in.readLong();
+				}
+				_states.put(uri, new CatalogState(etag, lastModified, digest, catalogRefs, versionHashes, versions));
+			}
+		} finally {
+			in.close();
+		}
+		
+	}
+	
+	private void save(final Map<URI, CatalogState> _states) throws IOException {
+		
+		if (file.getAbsoluteFile().getParentFile()!=null) file.getAbsoluteFile().getParentFile().mkdirs();
+		final File tmpFile = new File(file.getPath()+".tmp");
+		final FileOutputStream fos = new FileOutputStream(tmpFile);
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+			out.writeInt(MAGIC);
+			out.writeInt(_states.size());
+			for (final Map.Entry<URI, CatalogState> entry : _states.entrySet()) {
+				final CatalogState state = entry.getValue();
+				out.writeUTF(entry.getKey().toString());
+				writeString(out, state.getETag());
+				writeString(out, state.getLastModified());
+				out.writeUTF(state.getDigest());
+				out.writeInt(state.getCatalogRefs().size());
+				for (final URI catalogRef : state.getCatalogRefs()) out.writeUTF(catalogRef.toString());
+				out.writeInt(state.versions.length);
+				for (int i=0; i<state.versions.length; i++) {
+					out.writeLong(state.versionHashes[i]);
+					out.writeLong(state.versions[i]);
+				}
+			}
+			out.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+		
+		// replace the previous file
+		if (!tmpFile.renameTo(file)) {
+			if (!file.delete() || !tmpFile.renameTo(file)) {
+				throw new IOException("Cannot replace THREDDS catalogs state file: "+file.getAbsolutePath());
+			}
+		}
+		
+	}
+	
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		out.writeBoolean(value!=null);
+		if (value!=null) out.writeUTF(value);
+	}
+	
+	private static String readString(final DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+	
+	private static URI toURI(final String uri) throws IOException {
+		try {
+			return new URI(uri);
+		} catch(URISyntaxException e) {
+			throw new IOException("Invalid URI in THREDDS catalogs state file: "+uri);
+		}
+	}
+
+}
@@ -1,143 +1,565 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.publish.thredds;
-
-import java.net.URI;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Service;
-
-import esg.harvest.core.Record;
-import esg.harvest.publish.api.MetadataRepositoryCrawler;
-import esg.harvest.publish.api.MetadataRepositoryType;
-import esg.harvest.publish.api.RecordProducer;
-import thredds.catalog.InvCatalog;
-import thredds.catalog.InvCatalogFactory;
-import thredds.catalog.InvCatalogRef;
-import thredds.catalog.InvDataset;
-import thredds.catalog.InvDatasetImpl;
-/**
- * Implementation of {@link MetadataRepositoryCrawler} for processing a hierarchy of THREDDS catalogs.
- * This class implements the recursive behavior of the THREDDS harvesting process,
- * while delegating the parsing of catalogs and indexing of records to other configurable components.
- * Additionally, while crawling a hierarchy of catalogs, only the latest version records will be harvested.
- */
-@Service
-public class ThreddsCrawler implements MetadataRepositoryCrawler {
-	
-	private final ThreddsParserStrategy parser;
-		
-	private final Log LOG = LogFactory.getLog(this.getClass());
-	
-	@Autowired
-	public ThreddsCrawler(final ThreddsParserStrategy parser) {
-		//LOG.debug("CONSTRUCTOR: ThreddsCrawler");
-		
-		this.parser = parser;
-	}
-	
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	
-	public MetadataRepositoryType supports() {
-		return MetadataRepositoryType.THREDDS;
-	}
-	
-	
-	/**
-	 * Method to crawl a THREDDS catalog located at some URI,
-	 * and optionally the whole hierarchy of referenced catalogs.
-	 * @param uri : the URI of the starting THREDDS catalog
-	 * @param recursive : true to crawl the whole catalog hierarchy
-	 */
-	
-	public void crawl(final URI catalogURI, boolean recursive, final RecordProducer callback) throws Exception {
-		//LOG.debug("In ThreddsCrawler crawl()");
-		
-		
-		final InvCatalogFactory factory = new InvCatalogFactory("default", true); // validate=true
-		final InvCatalog catalog = factory.readXML(catalogURI);
-		final StringBuilder buff = new StringBuilder();
-		
-		// map containing latest version of records.
-		final Map<String, Record> vrecords = new HashMap<String,Record>();
-		
-		// valid catalog
-		if (catalog.check(buff)) {
-			
-			if (LOG.isInfoEnabled()) LOG.info("Parsing catalog:"+catalogURI.toString());
-			for (final InvDataset dataset : catalog.getDatasets()) {
-				
-				if (dataset instanceof InvCatalogRef) {
-					if (recursive) {
-						// crawl catalogs recursively
-						final URI catalogRef = getCatalogRef(dataset);
-						crawl(catalogRef, recursive, callback);
-					}
-				} else {
-					
-					// parse this catalog
-					final List<Record> records = parser.parseDataset(dataset);
-					
-					// index all resulting records (latest version only)
-					for (final Record record : records) {
-						LOG.debug("indexing record="+record.getId());
-						if (vrecords.get(record.getId())==null
-							|| vrecords.get(record.getId()).getVersion()<record.getVersion()) {
-							callback.notify(record);
-							vrecords.put(record.getId(), record);
-						} 
-					}
-					
-					
-				}
-				
-			}
-			
-		// invalid catalog
-		} else {
-			throw new Exception(buff.toString()); 
-		}
-		
-	}
-	
-	
-	
-	private URI getCatalogRef(final InvDataset dataset) throws Exception {
-		//LOG.debug("In ThreddsCrawler getCatalogRef");
-		
-		final InvCatalogRef catalogRef = (InvCatalogRef) dataset;
-		String uriString = InvDatasetImpl.resolve(dataset, catalogRef.getXlinkHref());
-		uriString = uriString.replace("/./", "/");
-		uriString = uriString.replace("\\.\\", "\\");
-		final URI uri = new URI(uriString);
-		uri.normalize();
-		return uri;
-		
-	}
-	
-	
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.thredds;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.MetadataRepositoryCrawler;
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.api.RecordProducer;
+import esg.harvest.publish.thredds.ThreddsCatalogStateStore.CatalogState;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.PrefetchPolicy;
+import esg.harvest.utils.Prefetcher;
+import thredds.catalog.InvCatalog;
+import thredds.catalog.InvCatalogFactory;
+import thredds.catalog.InvCatalogRef;
+import thredds.catalog.InvDataset;
+import thredds.catalog.InvDatasetImpl;
+/**
+ * Implementation of {@link MetadataRepositoryCrawler} for processing a hierarchy of THREDDS catalogs.
+ * This class implements the recursive behavior of the THREDDS harvesting process,
+ * while delegating the parsing of catalogs and indexing of records to other configurable components.
+ * Additionally, while crawling a hierarchy of catalogs, only the latest version records will be harvested.
+ * 
+ * Referenced catalogs can be crawled in parallel: each catalog is visited only once, 
+ * the number of catalogs retrieved concurrently is bounded both globally and for each host,
+ * and records are notified to the {@link RecordProducer} one at a time.
+ * 
+ * Crawls can be incremental: if a {@link ThreddsCatalogStateStore} is configured, catalogs are retrieved with conditional requests,
+ * and catalogs that are reported as not modified (or whose content has not changed) are neither parsed nor indexed again,
+ * although the catalogs they reference are still crawled. The state of the harvested catalogs is stored 
+ * once all records have been flushed at the end of a successful crawl.
+ * 
+ * When catalogs are crawled sequentially, the next catalogs referenced by the same parent catalog 
+ * can be fetched ahead (see {@link PrefetchPolicy}), while the current catalog is being parsed.
+ */
+@Service
+public class ThreddsCrawler implements MetadataRepositoryCrawler {
+	
+	private final ThreddsParserStrategy parser;
+	
+	/**
+	 * Client used to retrieve the remote catalogs.
+	 */
+	private final HttpClient httpClient;
+	
+	/**
+	 * Maximum number of catalogs processed concurrently (1 to crawl sequentially on the calling thread).
+	 */
+	private final int parallelism;
+	
+	/**
+	 * Maximum number of catalogs retrieved concurrently from the same host.
+	 */
+	private final int maxPerHost;
+	
+	/**
+	 * Store for the state of the catalogs harvested by previous crawls.
+	 */
+	private final ThreddsCatalogStateStore stateStore;
+	
+	/**
+	 * Policy for fetching catalogs ahead of the sequential crawl.
+	 */
+	private final PrefetchPolicy prefetchPolicy;
+		
+	private final Log LOG = LogFactory.getLog(this.getClass());
+	
+	/**
+	 * Constructor for a crawler that processes catalogs sequentially.
+	 * @param parser
+	 * @param httpClient
+	 */
+	public ThreddsCrawler(final ThreddsParserStrategy parser, final HttpClient httpClient) {
+		this(parser, httpClient, 1, 1, new ThreddsCatalogStateStore(), new PrefetchPolicy());
+	}
+	
+	@Autowired
+	public ThreddsCrawler(final ThreddsParserStrategy parser, final HttpClient httpClient,
+			              final @Value("${esg.harvest.thredds.parallelism}") int parallelism,
+			              final @Value("${esg.harvest.thredds.maxPerHost}") int maxPerHost,
+			              final ThreddsCatalogStateStore stateStore,
+			              final @Qualifier("prefetchPolicy") PrefetchPolicy prefetchPolicy) {
+		//LOG.debug("CONSTRUCTOR: ThreddsCrawler");
+		
+		Assert.isTrue(parallelism>0, "The number of catalogs crawled in parallel must be positive");
+		Assert.isTrue(maxPerHost>0, "The number of catalogs retrieved concurrently from each host must be positive");
+		this.parser = parser;
+		this.httpClient = httpClient;
+		this.parallelism = parallelism;
+		this.maxPerHost = maxPerHost;
+		this.stateStore = stateStore;
+		this.prefetchPolicy = prefetchPolicy;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	public MetadataRepositoryType supports() {
+		return MetadataRepositoryType.THREDDS;
+	}
+	
+	
+	/**
+	 * Method to crawl a THREDDS catalog located at some URI,
+	 * and optionally the whole hierarchy of referenced catalogs.
+	 * @param context : the crawl, starting at the URI of the THREDDS catalog;
+	 *                  if recursive the whole catalog hierarchy is crawled,
+	 *                  if incremental the catalogs that have not changed since the previous crawl are skipped
+	 */
+	
+	public void crawl(final CrawlContext context, final RecordProducer callback) throws Exception {
+		//LOG.debug("In ThreddsCrawler crawl()");
+		
+		final URI catalogURI = context.getUri();
+		final boolean recursive = context.isRecursive();
+		final Crawl crawl = new Crawl(context, callback, context.isIncremental() && stateStore.isEnabled());
+		crawl.visit(catalogURI);
+		if (recursive && parallelism>1) {
+			new ParallelCrawl(crawl).run(catalogURI);
+		} else {
+			crawl.prefetcher = recursive ? prefetchPolicy.newPrefetcher() : null;
+			try {
+				crawl(catalogURI, recursive, crawl);
+			} finally {
+				if (crawl.prefetcher!=null) crawl.prefetcher.close();
+			}
+		}
+		
+		if (stateStore.isEnabled()) {
+			// the catalogs state is stored only after all records have been indexed
+			callback.flush();
+			if (crawl.incremental) {
+				if (LOG.isInfoEnabled()) LOG.info("Crawled "+crawl.visited.size()+" catalogs, of which "+crawl.unchanged+" unchanged");
+				stateStore.update(crawl.states, new ArrayList<URI>());
+			} else {
+				// catalogs that were fully crawled (e.g. for removal) must be fully crawled again by the next incremental crawl
+				stateStore.update(new HashMap<URI, CatalogState>(), new ArrayList<URI>(crawl.visited));
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to crawl a catalog hierarchy sequentially (depth first) on the calling thread.
+	 * @param catalogURI
+	 * @param recursive
+	 * @param crawl
+	 * @throws Exception
+	 */
+	private void crawl(final URI catalogURI, boolean recursive, final Crawl crawl) throws Exception {
+		
+		final List<URI> catalogRefs = parseCatalog(catalogURI, crawl);
+		if (recursive) {
+			for (int i=0; i<catalogRefs.size(); i++) {
+				// fetch ahead the next referenced catalogs, while this one is crawled
+				if (crawl.prefetcher!=null) {
+					for (int j=i+1; j<catalogRefs.size() && j<=i+prefetchPolicy.getDepth(); j++) {
+						if (!crawl.visited.contains(catalogRefs.get(j)) && !prefetch(catalogRefs.get(j), crawl)) break;
+					}
+				}
+				if (crawl.visit(catalogRefs.get(i))) crawl(catalogRefs.get(i), recursive, crawl);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to start retrieving a catalog in the background.
+	 * @param catalogURI
+	 * @param crawl
+	 * @return false if the prefetch buffer is full
+	 * @throws Exception
+	 */
+	private boolean prefetch(final URI catalogURI, final Crawl crawl) throws Exception {
+		
+		final CatalogState previous = crawl.incremental ? stateStore.get(catalogURI) : null;
+		return crawl.prefetcher.prefetch(catalogURI, new Callable<HttpClient.ConditionalResponse>() {
+			public HttpClient.ConditionalResponse call() throws Exception {
+				return getCatalog(catalogURI, previous, crawl);
+			}
+		});
+		
+	}
+	
+	/**
+	 * Method to retrieve a catalog, conditionally if it was harvested by a previous crawl.
+	 * @param catalogURI
+	 * @param previous : the state of the catalog after the previous crawl, or null to retrieve the catalog unconditionally
+	 * @param crawl
+	 * @return
+	 * @throws Exception
+	 */
+	private HttpClient.ConditionalResponse getCatalog(final URI catalogURI, final CatalogState previous, final Crawl crawl) throws Exception {
+		
+		final Semaphore permits = crawl.getHostPermits(catalogURI);
+		permits.acquire();
+		try {
+			return httpClient.doGetConditional(catalogURI.toURL(), 
+					                           previous!=null ? previous.getETag() : null, 
+					                           previous!=null ? previous.getLastModified() : null);
+		} finally {
+			permits.release();
+		}
+		
+	}
+	
+	/**
+	 * Method to parse a single catalog, notify its records, and return the referenced catalogs.
+	 * This method can be invoked concurrently for different catalogs of the same crawl.
+	 * @param catalogURI
+	 * @param crawl
+	 * @return the URIs of the referenced catalogs, in document order
+	 * @throws Exception
+	 */
+	private List<URI> parseCatalog(final URI catalogURI, final Crawl crawl) throws Exception {
+		
+		final HttpClient.ConditionalResponse prefetched = crawl.prefetcher!=null ? crawl.prefetcher.take(catalogURI) : null;
+		
+		// full crawl: parse the catalog while it is being retrieved
+		if (!crawl.incremental && prefetched!=null) {
+			return parseCatalog(catalogURI, new ByteArrayInputStream(prefetched.getContent()), crawl, null);
+		} else if (!crawl.incremental) {
+			final Semaphore permits = crawl.getHostPermits(catalogURI);
+			permits.acquire();
+			try {
+				final InputStream in = httpClient.doGetStream(catalogURI.toURL());
+				try {
+					return parseCatalog(catalogURI, in, crawl, null);
+				} finally {
+					in.close();
+				}
+			} finally {
+				permits.release();
+			}
+		}
+		
+		// incremental crawl: retrieve the catalog only if modified since the previous crawl
+		final CatalogState previous = stateStore.get(catalogURI);
+		final HttpClient.ConditionalResponse response = prefetched!=null ? prefetched : getCatalog(catalogURI, previous, crawl);
+		
+		final String digest = response.isModified() ? digest(response.getContent()) : null;
+		if (previous!=null && (!response.isModified() || previous.getDigest().equals(digest))) {
+			if (LOG.isInfoEnabled()) LOG.info("Skipping unchanged catalog:"+catalogURI.toString());
+			crawl.update(catalogURI, previous.withValidators(response.getETag(), response.getLastModified()), true);
+			return previous.getCatalogRefs();
+		}
+		
+		final VersionIndex versions = new VersionIndex(16);
+		final List<URI> catalogRefs = parseCatalog(catalogURI, new ByteArrayInputStream(response.getContent()), crawl, versions);
+		crawl.update(catalogURI, new CatalogState(response.getETag(), response.getLastModified(), digest, catalogRefs, versions), false);
+		return catalogRefs;
+		
+	}
+	
+	/**
+	 * Method to parse a catalog from a stream.
+	 * @param catalogURI
+	 * @param in
+	 * @param crawl
+	 * @param versions : index populated with the versions of the parsed records (null if not needed)
+	 * @return the URIs of the referenced catalogs, in document order
+	 * @throws Exception
+	 */
+	private List<URI> parseCatalog(final URI catalogURI, final InputStream in, final Crawl crawl, final VersionIndex versions) throws Exception {
+		
+		final InvCatalogFactory factory = new InvCatalogFactory("default", true); // validate=true
+		final InvCatalog catalog = factory.readXML(in, catalogURI);
+		final StringBuilder buff = new StringBuilder();
+		
+		final List<URI> catalogRefs = new ArrayList<URI>();
+		
+		// valid catalog
+		if (catalog.check(buff)) {
+			
+			if (LOG.isInfoEnabled()) LOG.info("Parsing catalog:"+catalogURI.toString());
+			crawl.context.addDocument();
+			for (final InvDataset dataset : catalog.getDatasets()) {
+				
+				if (dataset instanceof InvCatalogRef) {
+					catalogRefs.add(getCatalogRef(dataset));
+				} else {
+					
+					// parse this catalog, indexing all resulting records (latest version only)
+					final RecordConsumer consumer = new RecordConsumer() {
+						public void consume(final Record record) throws Exception {
+							LOG.debug("indexing record="+record.getId());
+							crawl.notifyLatest(record);
+							if (versions!=null && record.getVersion()>0) versions.put(record.getId(), record.getVersion());
+						}
+						public void flush() {}
+					};
+					if (parser instanceof StreamingThreddsParserStrategy) {
+						((StreamingThreddsParserStrategy)parser).parseDataset(dataset, crawl.context, consumer);
+					} else {
+						for (final Record record : parser.parseDataset(dataset, crawl.context)) consumer.consume(record);
+					}
+					
+				}
+				
+			}
+			
+		// invalid catalog
+		} else {
+			throw new Exception(buff.toString()); 
+		}
+		
+		return catalogRefs;
+		
+	}
+	
+	/**
+	 * Method to compute the digest of a catalog content.
+	 * @param content
+	 * @return
+	 * @throws Exception
+	 */
+	private static String digest(final byte[] content) throws Exception {
+		
+		final byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+		final StringBuilder hex = new StringBuilder();
+		for (final byte b : digest) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+		
+	}
+	
+	
+	
+	private URI getCatalogRef(final InvDataset dataset) throws Exception {
+		//LOG.debug("In ThreddsCrawler getCatalogRef");
+		
+		final InvCatalogRef catalogRef = (InvCatalogRef) dataset;
+		String uriString = InvDatasetImpl.resolve(dataset, catalogRef.getXlinkHref());
+		uriString = uriString.replace("/./", "/");
+		uriString = uriString.replace("\\.\\", "\\");
+		final URI uri = new URI(uriString);
+		uri.normalize();
+		return uri;
+		
+	}
+	
+	/**
+	 * Class holding the state shared by all catalogs of a single crawl.
+	 */
+	private class Crawl {
+		
+		private final CrawlContext context;
+		
+		private final RecordProducer callback;
+		
+		/**
+		 * True to skip the catalogs that have not changed since the previous crawl.
+		 */
+		private final boolean incremental;
+		
+		/**
+		 * Catalogs already visited (or scheduled for visit) during this crawl.
+		 */
+		private final Set<URI> visited = Collections.synchronizedSet(new HashSet<URI>());
+		
+		/**
+		 * Latest version of each record notified during this crawl.
+		 */
+		private final VersionIndex versions = new VersionIndex();
+		
+		/**
+		 * Latest version of each record harvested by previous crawls (incremental crawls only),
+		 * which prevents older versions from being notified when their catalog changes
+		 * while the catalog holding the later version is skipped.
+		 */
+		private final VersionIndex knownVersions;
+		
+		/**
+		 * New state of the catalogs crawled incrementally.
+		 */
+		private final Map<URI, CatalogState> states = new HashMap<URI, CatalogState>();
+		
+		/**
+		 * Number of catalogs skipped because unchanged.
+		 */
+		private int unchanged = 0;
+		
+		/**
+		 * Permits for retrieving catalogs from each host.
+		 */
+		private final Map<String, Semaphore> hosts = new HashMap<String, Semaphore>();
+		
+		/**
+		 * Stage fetching catalogs ahead of a sequential crawl (null if catalogs are not prefetched).
+		 */
+		private Prefetcher prefetcher;
+		
+		Crawl(final CrawlContext context, final RecordProducer callback, final boolean incremental) throws Exception {
+			this.context = context;
+			this.callback = callback;
+			this.incremental = incremental;
+			this.knownVersions = incremental ? stateStore.getVersions() : new VersionIndex();
+		}
+		
+		/**
+		 * Method to mark a catalog as visited.
+		 * @param catalogURI
+		 * @return true if the catalog had not been visited yet
+		 */
+		boolean visit(final URI catalogURI) {
+			return visited.add(catalogURI);
+		}
+		
+		/**
+		 * Method to notify a record, unless a later version has already been notified.
+		 * Notifications are serialized, so that the producer's consumers are never invoked concurrently.
+		 * @param record
+		 * @throws Exception
+		 */
+		synchronized void notifyLatest(final Record record) throws Exception {
+			final long version = record.getVersion();
+			if (versions.get(record.getId(), -1L)<version && knownVersions.get(record.getId(), -1L)<=version) {
+				callback.notify(record);
+				versions.put(record.getId(), record.getVersion());
+			}
+		}
+		
+		synchronized void update(final URI catalogURI, final CatalogState state, final boolean skipped) {
+			states.put(catalogURI, state);
+			if (skipped) unchanged++;
+		}
+		
+		Semaphore getHostPermits(final URI catalogURI) {
+			final String host = catalogURI.getHost()!=null ? catalogURI.getHost().toLowerCase() : "";
+			synchronized (hosts) {
+				Semaphore permits = hosts.get(host);
+				if (permits==null) {
+					permits = new Semaphore(maxPerHost);
+					hosts.put(host, permits);
+				}
+				return permits;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Class that crawls a catalog hierarchy with a pool of threads, 
+	 * which take the next catalog to crawl from a shared frontier of pending catalogs.
+	 * The crawl stops scheduling new catalogs after the first error, which is re-thrown once all running catalogs are done.
+	 */
+	private class ParallelCrawl {
+		
+		private final Crawl crawl;
+		
+		private final ExecutorService executor;
+		
+		/**
+		 * Number of catalogs scheduled but not yet crawled.
+		 */
+		private int pending = 0;
+		
+		private Throwable error;
+		
+		ParallelCrawl(final Crawl crawl) {
+			this.crawl = crawl;
+			final AtomicInteger count = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "ThreddsCrawler-"+count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		
+		void run(final URI catalogURI) throws Exception {
+			
+			try {
+				this.schedule(catalogURI);
+				synchronized (this) {
+					while (pending>0) this.wait();
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+			if (error instanceof Error) throw (Error)error;
+			if (error!=null) throw (Exception)error;
+			
+		}
+		
+		private void schedule(final URI catalogURI) {
+			
+			synchronized (this) {
+				if (error!=null) return;
+				pending++;
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						for (final URI catalogRef : parseCatalog(catalogURI, crawl)) {
+							if (crawl.visit(catalogRef)) schedule(catalogRef);
+						}
+					} catch(Throwable t) {
+						LOG.error("Error crawling catalog: "+catalogURI+": "+t.getMessage());
+						synchronized (ParallelCrawl.this) {
+							if (error==null) error = t;
+						}
+					} finally {
+						synchronized (ParallelCrawl.this) {
+							pending--;
+							ParallelCrawl.this.notifyAll();
+						}
+					}
+				}
+			});
+			
+		}
+		
+	}
+	
+	
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.publish.thredds;
+
+/**
+ * Compact index of record versions, keyed by record identifier, used to resolve the latest version of each record
+ * across a whole crawl.
+ * The index does not retain the identifiers: each identifier is reduced to a 64-bit hash, stored with its version 
+ * in two primitive arrays (open addressing, linear probing), i.e. about 32 bytes per record.
+ * Two different identifiers may collide, with a probability in the order of n^2/2^65 for n records (about 10^-8 for a million records),
+ * in which case the older version of the two records would be considered stale.
+ * The same hashes (see {@link #hash(String)}) key the versions persisted for each catalog by {@link ThreddsCatalogStateStore}.
+ * This class is not thread-safe.
+ */
+public class VersionIndex {
+	
+	private final static int INITIAL_CAPACITY = 1024;
+	
+	/**
+	 * Hash reserved for empty slots.
+	 */
+	private final static long EMPTY = 0L;
+	
+	/**
+	 * Identifier hashes (EMPTY for empty slots), the capacity is a power of 2.
+	 */
+	private long[] hashes;
+	
+	private long[] versions;
+	
+	private int size = 0;
+	
+	/**
+	 * Constructor for an index of any size.
+	 */
+	public VersionIndex() {
+		this(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Constructor for an index expected to hold few records (it grows as needed).
+	 * @param capacity : the initial capacity (rounded up to a power of 2)
+	 */
+	public VersionIndex(final int capacity) {
+		int _capacity = 2;
+		while (_capacity<capacity) _capacity *= 2;
+		hashes = new long[_capacity];
+		versions = new long[_capacity];
+	}
+	
+	/**
+	 * Method to return the version of a record.
+	 * @param id : the record identifier
+	 * @param defaultVersion : the value returned if the record is not in the index
+	 * @return
+	 */
+	public long get(final String id, final long defaultVersion) {
+		final int slot = this.find(hash(id));
+		return hashes[slot]!=EMPTY ? versions[slot] : defaultVersion;
+	}
+	
+	/**
+	 * @param id
+	 * @return true if the record is in the index
+	 */
+	public boolean contains(final String id) {
+		return hashes[this.find(hash(id))]!=EMPTY;
+	}
+	
+	/**
+	 * Method to set the version of a record, replacing any previous version.
+	 * @param id
+	 * @param version
+	 */
+	public void put(final String id, final long version) {
+		this.put(hash(id), version);
+	}
+	
+	/**
+	 * Method to set the version of a record, unless a later version is already in the index.
+	 * @param id
+	 * @param version
+	 */
+	public void putLatest(final String id, final long version) {
+		this.putLatest(hash(id), version);
+	}
+	
+	/**
+	 * Method to set the version of a record, unless a later version is already in the index.
+	 * @param hash : the hash of the record identifier
+	 * @param version
+	 */
+	void putLatest(final long hash, final long version) {
+		final int slot = this.find(hash);
+		if (hashes[slot]==EMPTY || versions[slot]<version) this.put(hash, version);
+	}
+	
+	private void put(final long hash, final long version) {
+		
+		final int slot = this.find(hash);
+		if (hashes[slot]==EMPTY) {
+			hashes[slot] = hash;
+			size++;
+		}
+		versions[slot] = version;
+		if (size > hashes.length*3/4) this.resize();
+		
+	}
+	
+	/**
+	 * @return the number of records in the index
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the hashes of the record identifiers, in the same order as {@link #getVersions()}
+	 */
+	long[] getHashes() {
+		return this.toArray(hashes);
+	}
+	
+	/**
+	 * @return the versions of the records, in the same order as {@link #getHashes()}
+	 */
+	long[] getVersions() {
+		return this.toArray(versions);
+	}
+	
+	/**
+	 * Method to copy the values of the non-empty slots into an array.
+	 */
+	private long[] toArray(final long[] values) {
+		final long[] array = new long[size];
+		int j = 0;
+		for (int i=0; i<hashes.length; i++) {
+			if (hashes[i]!=EMPTY) array[j++] = values[i];
+		}
+		return array;
+	}
+	
+	/**
+	 * Method to return the slot holding a hash, or the empty slot where it should be inserted.
+	 * @param hash
+	 * @return
+	 */
+	private int find(final long hash) {
+		final int mask = hashes.length-1;
+		int slot = (int)(hash ^ (hash>>>32)) & mask;
+		while (hashes[slot]!=EMPTY && hashes[slot]!=hash) {
+			slot = (slot+1) & mask;
+		}
+		return slot;
+	}
+	
+	private void resize() {
+		
+		final long[] _hashes = hashes;
+		final long[] _versions = versions;
+		hashes = new long[_hashes.length*2];
+		versions = new long[_hashes.length*2];
+		for (int i=0; i<_hashes.length; i++) {
+			if (_hashes[i]!=EMPTY) {
+				final int slot = this.find(_hashes[i]);
+				hashes[slot] = _hashes[i];
+				versions[slot] = _versions[i];
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to compute the 64-bit hash of an identifier (FNV-1a, followed by a bit mixing step).
+	 * @param id
+	 * @return a hash different from EMPTY
+	 */
+	static long hash(final String id) {
+		
+		long hash = 0xcbf29ce484222325L;
+		for (int i=0; i<id.length(); i++) {
+			hash ^= id.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash>>>33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash>>>33;
+		return hash!=EMPTY ? hash : 1L;
+		
+	}
+
+}
@@ -1,83 +1,83 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.query.impl.solr;
-
-import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLEncoder;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.springframework.util.StringUtils;
-
-/**
- * Utility class to generate URL according to the Solr REST API.
- */
-public class SolrUrlBuilder {
-	
-	/**
-	 * The base URL of the Solr server.
-	 */
-	private final URL url;
-	
-	
-	/**
-	 * The facets to be retrieved as part of the search.
-	 */
-	private List<String> facets;
-	
-	private final static String UTF8 = "UTF-8";
-	
-	private static final Log LOG = LogFactory.getLog(SolrUrlBuilder.class);
-	
-	/**
-	 * Constructor is initialized with the base URL of the Apache-Solr server.
-	 * @param url
-	 * @throws MalformedURLException
-	 */
-	public SolrUrlBuilder(final URL url) {
-		this.url = url;
-	}
-	
-	
-	
-	
-	/**
-	 * Method to generate the "update" URL.
-	 * This method is independent of the specific state of the object.
-	 * @return
-	 * @throws MalformedURLException
-	 * @throws UnsupportedEncodingException
-	 */
-	
-	public URL buildUpdateUrl(final boolean commit) throws MalformedURLException, UnsupportedEncodingException {
-		
-		final StringBuilder sb = new StringBuilder(url.toString()).append("/update");
-		if (commit) sb.append("?commit=true");
-		return new URL(sb.toString());
-		
-	}
-	
-	
-	
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.query.impl.solr;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * Utility class to generate URL according to the Solr REST API.
+ */
+public class SolrUrlBuilder {
+	
+	/**
+	 * The base URL of the Solr server.
+	 */
+	private final URL url;
+	
+	
+	/**
+	 * The facets to be retrieved as part of the search.
+	 */
+	private List<String> facets;
+	
+	private final static String UTF8 = "UTF-8";
+	
+	private static final Log LOG = LogFactory.getLog(SolrUrlBuilder.class);
+	
+	/**
+	 * Constructor is initialized with the base URL of the Apache-Solr server.
+	 * @param url
+	 * @throws MalformedURLException
+	 */
+	public SolrUrlBuilder(final URL url) {
+		this.url = url;
+	}
+	
+	
+	
+	
+	/**
+	 * Method to generate the "update" URL.
+	 * This method is independent of the specific state of the object.
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws UnsupportedEncodingException
+	 */
+	
+	public URL buildUpdateUrl(final boolean commit) throws MalformedURLException, UnsupportedEncodingException {
+		
+		final StringBuilder sb = new StringBuilder(url.toString()).append("/update");
+		if (commit) sb.append("?commit=true");
+		return new URL(sb.toString());
+		
+	}
+	
+	
+	
+}
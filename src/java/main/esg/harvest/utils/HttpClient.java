@@ -1,110 +1,406 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.utils;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.URL;
-import java.net.URLConnection;
-import java.net.URLEncoder;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
-import esg.harvest.publish.impl.MetadataRepositoryCrawlerManagerImpl;
-
-/**
- * Simple class to execute an HTTP GET/POST request,
- * and return the HTTP response as a single string.
- */
-public class HttpClient {
-	private static final Log LOG = LogFactory.getLog(HttpClient.class);
-	
-	/**
-	 * Method to execute an HTTP GET request.
-	 * @param url
-	 * @return
-	 * @throws IOException
-	 */
-	public String doGet(final URL url) throws IOException {
-						
-		// prepare HTTP request
-		final URLConnection connection = url.openConnection();		
-		connection.setUseCaches(false);
-				
-	    // execute HTTP request
-	    return getResponse(connection);
-		
-	}
-	
-	/**
-	 * Method to send an XML document as a POST request.
-	 * @param url
-	 * @param xml
-	 * @return
-	 * @throws IOException
-	 */
-	public String doPostXml(final URL url, final String xml) throws IOException {
-		
-		// prepare HTTP request
-	    final URLConnection connection = url.openConnection();
-	    connection.setUseCaches(false);
-	    connection.setDoOutput(true); // POST method
-	    connection.setRequestProperty("Content-Type", "text/xml");
-	    connection.setRequestProperty("Charset", "utf-8");
-	    
-	    // preemptive authentication
-	    //final String userpassword = "<username>" + ":" + "<password>";   
-	    //final byte[] authEncBytes = Base64.encodeBase64(userpassword.getBytes());
-		//final String authStringEnc = new String(authEncBytes);
-	    //connection.setRequestProperty("Authorization", "Basic "+ authStringEnc );   
-	    	    
-		
-	    final OutputStreamWriter wr = new OutputStreamWriter(connection.getOutputStream());
-	    wr.write(xml);
-	    wr.flush();
-	    wr.close();
-
-	    // execute HTTP request
-	    return getResponse(connection);
-		
-	}
-	
-	/**
-	 * Method to execute an HTTP request (GET/POST) and return the HTTP response.
-	 * @param connection
-	 * @return
-	 * @throws IOException
-	 */
-	private String getResponse(final URLConnection connection) throws IOException {
-		LOG.debug("In HttpClient getResponse");
-	    final BufferedReader rd = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-	    final StringBuilder sb = new StringBuilder();
-	    String line = null;
-	    while ((line = rd.readLine()) != null) {
-	    	sb.append(line + "\n");
-	    }
-	    rd.close();
-	    return sb.toString();
-	    
-	}
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Class to execute HTTP GET/POST requests over a pool of persistent (keep-alive) connections,
+ * with a maximum number of connections per host, and connect and read timeouts.
+ * GET requests accept gzip-compressed responses, and POST request bodies can optionally be gzip-compressed.
+ * Responses are returned as streams or byte arrays, and decoded by the caller;
+ * conditional GET requests return no content if the resource has not been modified since it was last retrieved;
+ * unsuccessful responses raise an {@link HttpStatusException}.
+ * URLs with a scheme other than http(s) (e.g. file:) are read through the standard {@link URL} mechanism.
+ * 
+ * This class is thread-safe: a single instance is meant to be shared by all crawlers and Solr clients.
+ */
+@Component("httpClient")
+public class HttpClient {
+	private static final Log LOG = LogFactory.getLog(HttpClient.class);
+	
+	private final static String UTF8 = "UTF-8";
+	
+	private final static String GZIP = "gzip";
+	
+	private final static String XML_CONTENT_TYPE = "text/xml; charset=utf-8";
+	
+	/**
+	 * Callback interface used to write the body of a POST request directly to the connection output stream.
+	 */
+	public interface PostBody {
+		
+		void writeTo(OutputStream out) throws IOException;
+		
+	}
+	
+	/**
+	 * Response to a conditional GET request, with the validators to be sent with the next request.
+	 */
+	public static class ConditionalResponse {
+		
+		private final byte[] content;
+		
+		private final String etag;
+		
+		private final String lastModified;
+		
+		ConditionalResponse(final byte[] content, final String etag, final String lastModified) {
+			this.content = content;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+		
+		/**
+		 * @return false if the server reported the resource as not modified
+		 */
+		public boolean isModified() {
+			return content!=null;
+		}
+		
+		/**
+		 * @return the response body, or null if the resource was not modified
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+		
+		/**
+		 * @return the value of the ETag response header, if any
+		 */
+		public String getETag() {
+			return etag;
+		}
+		
+		/**
+		 * @return the value of the Last-Modified response header, if any
+		 */
+		public String getLastModified() {
+			return lastModified;
+		}
+		
+	}
+	
+	private final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+	
+	private final org.apache.commons.httpclient.HttpClient client;
+	
+	/**
+	 * Flag to gzip-compress the body of POST requests
+	 * (note that the receiving server must be configured to decompress them).
+	 */
+	private final boolean compressRequests;
+	
+	/**
+	 * Constructor with default configuration: 
+	 * 8 connections per host, 1 minute connect timeout, 5 minutes read timeout, uncompressed requests.
+	 */
+	public HttpClient() {
+		this(8, 64, 60000, 300000, false);
+	}
+	
+	/**
+	 * Constructor configures the connection pool.
+	 * @param maxConnectionsPerHost : maximum number of concurrent connections to the same host
+	 * @param maxConnections : maximum number of concurrent connections to all hosts
+	 * @param connectTimeout : timeout for establishing a connection, in milliseconds (0 for no timeout)
+	 * @param readTimeout : timeout while waiting for data, in milliseconds (0 for no timeout)
+	 * @param compressRequests : true to gzip-compress the body of POST requests
+	 */
+	@Autowired
+	public HttpClient(final @Value("${esg.harvest.http.maxConnectionsPerHost}") int maxConnectionsPerHost,
+			          final @Value("${esg.harvest.http.maxConnections}") int maxConnections,
+			          final @Value("${esg.harvest.http.connectTimeout}") int connectTimeout,
+			          final @Value("${esg.harvest.http.readTimeout}") int readTimeout,
+			          final @Value("${esg.harvest.http.compressRequests}") boolean compressRequests) {
+		
+		final HttpConnectionManagerParams params = connectionManager.getParams();
+		params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+		params.setMaxTotalConnections(maxConnections);
+		params.setConnectionTimeout(connectTimeout);
+		params.setSoTimeout(readTimeout);
+		params.setStaleCheckingEnabled(true);
+		client = new org.apache.commons.httpclient.HttpClient(connectionManager);
+		this.compressRequests = compressRequests;
+		
+	}
+	
+	/**
+	 * Method to execute an HTTP GET request and return the full response body.
+	 * @param url
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] doGet(final URL url) throws IOException {
+		
+		return toByteArray(this.doGetStream(url));
+		
+	}
+	
+	/**
+	 * Method to execute an HTTP GET request and return the response body as a stream,
+	 * which must be closed by the caller to release the connection.
+	 * @param url
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream doGetStream(final URL url) throws IOException {
+		
+		if (!isHttp(url)) return url.openStream();
+		
+		final GetMethod method = new GetMethod(url.toString());
+		method.setRequestHeader("Accept-Encoding", GZIP);
+		return this.execute(url, method);
+		
+	}
+	
+	/**
+	 * Method to execute a conditional HTTP GET request, which returns the full response body
+	 * only if the resource has changed since it was retrieved with the given validators.
+	 * URLs with a scheme other than http(s) are always retrieved in full, without validators.
+	 * @param url
+	 * @param etag : the ETag of the previously retrieved resource, or null
+	 * @param lastModified : the Last-Modified date of the previously retrieved resource, or null
+	 * @return
+	 * @throws IOException
+	 */
+	public ConditionalResponse doGetConditional(final URL url, final String etag, final String lastModified) throws IOException {
+		
+		if (!isHttp(url)) return new ConditionalResponse(toByteArray(url.openStream()), null, null);
+		
+		final GetMethod method = new GetMethod(url.toString());
+		method.setRequestHeader("Accept-Encoding", GZIP);
+		if (etag!=null) method.setRequestHeader("If-None-Match", etag);
+		if (lastModified!=null) method.setRequestHeader("If-Modified-Since", lastModified);
+		
+		final InputStream in = this.execute(url, method, true);
+		final Header etagHeader = method.getResponseHeader("ETag");
+		final Header lastModifiedHeader = method.getResponseHeader("Last-Modified");
+		final String newEtag = etagHeader!=null ? etagHeader.getValue() : etag;
+		final String newLastModified = lastModifiedHeader!=null ? lastModifiedHeader.getValue() : lastModified;
+		return new ConditionalResponse(in!=null ? toByteArray(in) : null, newEtag, newLastModified);
+		
+	}
+	
+	/**
+	 * Method to send an XML document as a POST request.
+	 * @param url
+	 * @param xml
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] doPostXml(final URL url, final String xml) throws IOException {
+		
+		final byte[] bytes = xml.getBytes(UTF8);
+		return doPostXml(url, new PostBody() {
+			public void writeTo(final OutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		});
+		
+	}
+	
+	/**
+	 * Method to send an XML document as a POST request,
+	 * streaming the document directly to the connection as it is written by the given callback.
+	 * @param url
+	 * @param body
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] doPostXml(final URL url, final PostBody body) throws IOException {
+		
+		final PostMethod method = new PostMethod(url.toString());
+		if (compressRequests) method.setRequestHeader("Content-Encoding", GZIP);
+		
+	    // preemptive authentication
+	    //final String userpassword = "<username>" + ":" + "<password>";   
+	    //final byte[] authEncBytes = Base64.encodeBase64(userpassword.getBytes());
+		//final String authStringEnc = new String(authEncBytes);
+	    //method.setRequestHeader("Authorization", "Basic "+ authStringEnc );   
+		
+		// the request body is streamed with chunked encoding, without being buffered in memory
+		method.setRequestEntity(new RequestEntity() {
+			public boolean isRepeatable() {
+				return false;
+			}
+			public void writeRequest(final OutputStream out) throws IOException {
+				if (compressRequests) {
+					final GZIPOutputStream gzip = new GZIPOutputStream(out);
+					body.writeTo(gzip);
+					gzip.finish();
+				} else {
+					body.writeTo(out);
+				}
+			}
+			public long getContentLength() {
+				return -1;
+			}
+			public String getContentType() {
+				return XML_CONTENT_TYPE;
+			}
+		});
+		
+		return toByteArray(this.execute(url, method));
+		
+	}
+	
+	/**
+	 * Method to close all pooled connections when the Spring context is closed.
+	 */
+	@PreDestroy
+	public void close() {
+		connectionManager.shutdown();
+	}
+	
+	/**
+	 * Method to execute an HTTP request (GET/POST) and return the (decompressed) response body.
+	 * The connection is released to the pool when the returned stream is closed.
+	 * @param url
+	 * @param method
+	 * @return
+	 * @throws IOException
+	 */
+	private InputStream execute(final URL url, final HttpMethod method) throws IOException {
+		
+		return this.execute(url, method, false);
+		
+	}
+	
+	/**
+	 * Method to execute an HTTP request, optionally accepting a "Not Modified" response.
+	 * @param url
+	 * @param method
+	 * @param conditional : true to return null (and release the connection) if the resource was not modified
+	 * @return
+	 * @throws IOException
+	 */
+	private InputStream execute(final URL url, final HttpMethod method, final boolean conditional) throws IOException {
+		
+		boolean success = false;
+		try {
+			
+			final int status = client.executeMethod(method);
+			if (LOG.isDebugEnabled()) LOG.debug(method.getName()+" "+url.toString()+": "+method.getStatusLine());
+			if (conditional && status==HttpStatus.SC_NOT_MODIFIED) {
+				return null;
+			} else if (status<HttpStatus.SC_OK || status>=HttpStatus.SC_MULTIPLE_CHOICES) {
+				throw new HttpStatusException("HTTP request to "+url.toString()+" failed: "+method.getStatusLine(), status, 
+						                      getRetryAfter(method));
+			}
+			
+			InputStream in = method.getResponseBodyAsStream();
+			if (in==null) in = new ByteArrayInputStream(new byte[0]);
+			final Header encoding = method.getResponseHeader("Content-Encoding");
+			if (encoding!=null && encoding.getValue().toLowerCase().contains(GZIP)) {
+				in = new GZIPInputStream(in);
+			}
+			
+			final InputStream response = new FilterInputStream(in) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						method.releaseConnection();
+					}
+				}
+			};
+			success = true;
+			return response;
+			
+		} finally {
+			if (!success) method.releaseConnection();
+		}
+		
+	}
+	
+	/**
+	 * Method to read a stream fully into a byte array, and close it.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] toByteArray(final InputStream in) throws IOException {
+		
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+		
+	}
+	
+	/**
+	 * Method to parse the Retry-After header of a response (only the delay-seconds form is supported).
+	 * @param method
+	 * @return the delay in milliseconds, or -1 if missing or unsupported
+	 */
+	private static long getRetryAfter(final HttpMethod method) {
+		
+		final Header header = method.getResponseHeader("Retry-After");
+		if (header==null) return -1L;
+		try {
+			return Math.max(0L, Long.parseLong(header.getValue().trim())*1000L);
+		} catch(NumberFormatException e) {
+			return -1L;
+		}
+		
+	}
+	
+	/**
+	 * Method to determine whether a URL is served by the connection pool.
+	 * @param url
+	 * @return
+	 */
+	private static boolean isHttp(final URL url) {
+		return "http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol());
+	}
+
+}
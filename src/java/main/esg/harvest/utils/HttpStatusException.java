@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.utils;
+
+import java.io.IOException;
+
+/**
+ * Exception raised when an HTTP request returns an unsuccessful status code.
+ */
+public class HttpStatusException extends IOException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final int statusCode;
+	
+	/**
+	 * Delay requested by the server before retrying, in milliseconds (-1 if none).
+	 */
+	private final long retryAfter;
+	
+	public HttpStatusException(final String message, final int statusCode) {
+		this(message, statusCode, -1L);
+	}
+	
+	public HttpStatusException(final String message, final int statusCode, final long retryAfter) {
+		super(message);
+		this.statusCode = statusCode;
+		this.retryAfter = retryAfter;
+	}
+	
+	/**
+	 * Method to return the HTTP status code of the response.
+	 * @return
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * Method to return the delay requested by the server through the Retry-After header (e.g. for flow control).
+	 * @return the delay in milliseconds, or -1 if the server did not request a delay
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.utils;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Policy configuring how far crawlers fetch ahead of the document they are currently parsing:
+ * the maximum number of documents retrieved in the background (the prefetch depth),
+ * and the maximum number of bytes held by the retrieved documents that have not been parsed yet.
+ * Each crawl uses its own {@link Prefetcher}, created by this policy.
+ */
+@Component("prefetchPolicy")
+public class PrefetchPolicy {
+	
+	/**
+	 * Maximum number of documents fetched ahead (0 to disable prefetching).
+	 */
+	private final int depth;
+	
+	/**
+	 * Maximum number of bytes held by prefetched documents.
+	 */
+	private final long maxBytes;
+	
+	/**
+	 * Constructor for a policy that disables prefetching.
+	 */
+	public PrefetchPolicy() {
+		this(0, 0L);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param depth
+	 * @param maxBytes
+	 */
+	@Autowired
+	public PrefetchPolicy(final @Value("${esg.harvest.prefetch.depth}") int depth,
+			              final @Value("${esg.harvest.prefetch.maxBytes}") long maxBytes) {
+		Assert.isTrue(depth>=0, "The prefetch depth cannot be negative");
+		Assert.isTrue(depth==0 || maxBytes>0, "The maximum number of prefetched bytes must be positive");
+		this.depth = depth;
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * @return true if documents are fetched ahead
+	 */
+	public boolean isEnabled() {
+		return depth>0;
+	}
+	
+	/**
+	 * @return the maximum number of documents fetched ahead
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * Method to create the prefetching stage for a single crawl, which must be closed at the end of the crawl.
+	 * @return the prefetcher, or null if prefetching is disabled
+	 */
+	public Prefetcher newPrefetcher() {
+		return depth>0 ? new Prefetcher(depth, maxBytes) : null;
+	}
+
+}
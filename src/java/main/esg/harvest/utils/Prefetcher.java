@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.utils;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Class that retrieves documents in the background, ahead of the crawler that will parse them:
+ * while the current document is being parsed (and its records indexed), the next documents
+ * are downloaded by a pool of threads into a buffer bounded both in number of documents (the prefetch depth)
+ * and in total size. Requests beyond the depth are ignored, and documents that would exceed the size limit
+ * are discarded once retrieved: in both cases, as well as when prefetching fails, the crawler retrieves 
+ * the document itself, so prefetching never changes the outcome of a crawl.
+ * This class is thread-safe.
+ */
+public class Prefetcher {
+	
+	private static final Log LOG = LogFactory.getLog(Prefetcher.class);
+	
+	/**
+	 * Maximum number of documents retrieved (or held) ahead of the crawler.
+	 */
+	private final int depth;
+	
+	/**
+	 * Maximum number of bytes held by the prefetched documents.
+	 */
+	private final long maxBytes;
+	
+	/**
+	 * Number of bytes currently held by prefetched documents.
+	 */
+	private long bytes = 0;
+	
+	/**
+	 * Pending documents, keyed by URI.
+	 */
+	private final Map<URI, Future<HttpClient.ConditionalResponse>> documents = new HashMap<URI, Future<HttpClient.ConditionalResponse>>();
+	
+	private final ExecutorService executor;
+	
+	private boolean closed = false;
+	
+	/**
+	 * Constructor.
+	 * @param depth
+	 * @param maxBytes
+	 */
+	public Prefetcher(final int depth, final long maxBytes) {
+		this.depth = depth;
+		this.maxBytes = maxBytes;
+		final AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(depth, new ThreadFactory() {
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Prefetcher-"+count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Method to start retrieving a document in the background, unless it is already being prefetched,
+	 * or the buffer is full.
+	 * @param uri : the key of the document
+	 * @param fetch : the task retrieving the document
+	 * @return true if the document is being prefetched
+	 */
+	public boolean prefetch(final URI uri, final Callable<HttpClient.ConditionalResponse> fetch) {
+		try {
+			return this.prefetch(uri, fetch, false);
+		} catch(InterruptedException e) {
+			// not reached
+			return false;
+		}
+	}
+	
+	/**
+	 * Method to start retrieving a document in the background, unless it is already being prefetched,
+	 * optionally waiting for the buffer to have room for the document.
+	 * Waiting is meant for chains of documents prefetched by the tasks retrieving the previous document,
+	 * which resume as soon as the crawler takes a document out of the buffer.
+	 * @param uri : the key of the document
+	 * @param fetch : the task retrieving the document
+	 * @param wait : true to wait while the buffer is full, false to give up
+	 * @return true if the document is being prefetched
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean prefetch(final URI uri, final Callable<HttpClient.ConditionalResponse> fetch, final boolean wait) 
+	       throws InterruptedException {
+		
+		while (wait && !closed && !documents.containsKey(uri) && (documents.size()>=depth || bytes>=maxBytes)) this.wait();
+		if (documents.containsKey(uri)) return true;
+		if (closed || documents.size()>=depth || bytes>=maxBytes) return false;
+		
+		if (LOG.isDebugEnabled()) LOG.debug("Prefetching: "+uri);
+		documents.put(uri, executor.submit(new Callable<HttpClient.ConditionalResponse>() {
+			public HttpClient.ConditionalResponse call() throws Exception {
+				final HttpClient.ConditionalResponse response = fetch.call();
+				synchronized (Prefetcher.this) {
+					if (bytes+size(response)>maxBytes) {
+						LOG.debug("Discarding prefetched document (buffer full): "+uri);
+						return null;
+					}
+					bytes += size(response);
+				}
+				return response;
+			}
+		}));
+		return true;
+		
+	}
+	
+	/**
+	 * Method to take a prefetched document out of the buffer, waiting for its retrieval to complete if needed.
+	 * @param uri : the key of the document
+	 * @return the document, or null if it was not prefetched (in which case it must be retrieved by the caller)
+	 * @throws InterruptedException
+	 */
+	public HttpClient.ConditionalResponse take(final URI uri) throws InterruptedException {
+		
+		final Future<HttpClient.ConditionalResponse> future;
+		synchronized (this) {
+			future = documents.remove(uri);
+			this.notifyAll();
+		}
+		if (future==null) return null;
+		
+		try {
+			final HttpClient.ConditionalResponse response = future.get();
+			if (response!=null) {
+				synchronized (this) {
+					bytes -= size(response);
+					this.notifyAll();
+				}
+			}
+			return response;
+		} catch(ExecutionException e) {
+			LOG.warn("Error prefetching: "+uri+": "+e.getCause().getMessage());
+			return null;
+		}
+		
+	}
+	
+	/**
+	 * Method to stop all background retrievals, and discard all prefetched documents.
+	 */
+	public synchronized void close() {
+		closed = true;
+		executor.shutdownNow();
+		documents.clear();
+		this.notifyAll();
+	}
+	
+	private static long size(final HttpClient.ConditionalResponse response) {
+		return response.isModified() ? response.getContent().length : 0L;
+	}
+
+}
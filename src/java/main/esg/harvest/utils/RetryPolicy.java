@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.utils;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.httpclient.HttpStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Policy deciding whether, and after how long, a failed remote operation is attempted again.
+ * The delay before each new attempt grows exponentially up to a maximum, 
+ * and is randomized (between half and the full delay) so that concurrent clients do not retry in lockstep.
+ * Only transient errors are retried: I/O errors, and HTTP responses with status 408, 429 or 5xx.
+ * This class is thread-safe.
+ */
+@Component("retryPolicy")
+public class RetryPolicy {
+	
+	/**
+	 * Maximum number of attempts (including the first one).
+	 */
+	private final int maxAttempts;
+	
+	/**
+	 * Delay before the second attempt, in milliseconds.
+	 */
+	private final long initialDelay;
+	
+	/**
+	 * Maximum delay between attempts, in milliseconds.
+	 */
+	private final long maxDelay;
+	
+	private final Random random = new Random();
+	
+	/**
+	 * Constructor for a policy that never retries.
+	 */
+	public RetryPolicy() {
+		this(1, 0L, 0L);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param maxAttempts
+	 * @param initialDelay
+	 * @param maxDelay
+	 */
+	@Autowired
+	public RetryPolicy(final @Value("${esg.harvest.retry.attempts}") int maxAttempts,
+			           final @Value("${esg.harvest.retry.delay}") long initialDelay,
+			           final @Value("${esg.harvest.retry.maxDelay}") long maxDelay) {
+		Assert.isTrue(maxAttempts>0, "The maximum number of attempts must be positive");
+		this.maxAttempts = maxAttempts;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+	}
+	
+	/**
+	 * Method to determine whether an operation that failed with the given error should be attempted again.
+	 * @param attempt : the number of attempts already made
+	 * @param e : the error raised by the last attempt
+	 * @return
+	 */
+	public boolean isRetryRequired(final int attempt, final Exception e) {
+		
+		if (attempt>=maxAttempts) return false;
+		if (e instanceof HttpStatusException) {
+			final int status = ((HttpStatusException)e).getStatusCode();
+			return status==HttpStatus.SC_REQUEST_TIMEOUT || status==429 || status>=HttpStatus.SC_INTERNAL_SERVER_ERROR;
+		}
+		return e instanceof IOException;
+		
+	}
+	
+	/**
+	 * Method to compute the (randomized) delay before the next attempt.
+	 * @param attempt : the number of attempts already made
+	 * @return
+	 */
+	public long getDelay(final int attempt) {
+		
+		long delay = initialDelay;
+		for (int i=1; i<attempt && delay<maxDelay; i++) delay *= 2;
+		delay = Math.min(delay, maxDelay);
+		if (delay<=1) return delay;
+		synchronized (random) {
+			return delay/2 + (long)(random.nextDouble()*(delay - delay/2));
+		}
+		
+	}
+	
+	/**
+	 * Method to compute the delay before the next attempt after the given error,
+	 * which is the delay requested by the server (through the Retry-After header) if any,
+	 * bounded by the maximum delay so that a misbehaving server cannot stall the client.
+	 * @param attempt : the number of attempts already made
+	 * @param e : the error raised by the last attempt
+	 * @return
+	 */
+	public long getDelay(final int attempt, final Exception e) {
+		
+		if (e instanceof HttpStatusException && ((HttpStatusException)e).getRetryAfter()>=0) {
+			return Math.min(((HttpStatusException)e).getRetryAfter(), maxDelay);
+		}
+		return this.getDelay(attempt);
+		
+	}
+	
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+}
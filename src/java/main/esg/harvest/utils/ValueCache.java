@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ * Bounded cache used to share a single instance of the string values repeated across the records of a crawl
+ * (e.g. the metadata URL, project, service types and access URL prefixes repeated by every file record of a dataset),
+ * so that the records held in memory do not each retain their own copy.
+ * The least recently used values are evicted once the cache is full; long values are not cached.
+ * This class is thread-safe.
+ */
+public class ValueCache {
+	
+	/**
+	 * Default maximum number of cached values.
+	 */
+	public final static int DEFAULT_SIZE = 4096;
+	
+	/**
+	 * Maximum length of the cached values: longer values (e.g. descriptions) are unlikely to be repeated.
+	 */
+	public final static int MAX_LENGTH = 512;
+	
+	private final Map<String, String> values;
+	
+	/**
+	 * Number of values replaced by a cached instance.
+	 */
+	private long hits = 0;
+	
+	/**
+	 * Constructor.
+	 * @param size : the maximum number of cached values
+	 */
+	public ValueCache(final int size) {
+		Assert.isTrue(size>0, "The value cache size must be positive");
+		this.values = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+				return size() > size;
+			}
+		};
+	}
+	
+	/**
+	 * Method to return the cached instance of a value, caching the value if not found.
+	 * @param value
+	 * @return an instance equal to the value (null if the value is null)
+	 */
+	public synchronized String get(final String value) {
+		
+		if (value==null || value.length()>MAX_LENGTH) return value;
+		final String cached = values.get(value);
+		if (cached!=null) {
+			hits++;
+			return cached;
+		}
+		values.put(value, value);
+		return value;
+		
+	}
+	
+	/**
+	 * @return the number of values replaced by a cached instance
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+}
@@ -1,89 +1,192 @@
-/*******************************************************************************
- * Copyright (c) 2010 Earth System Grid Federation
- * ALL RIGHTS RESERVED. 
- * U.S. Government sponsorship acknowledged.
- * 
- * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
- * 
- * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
- * 
- * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
- * 
- * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
- * 
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
- * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
- * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- ******************************************************************************/
-package esg.harvest.utils;
-
-import java.io.IOException;
-import java.io.StringReader;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.jdom.Document;
-import org.jdom.JDOMException;
-import org.jdom.input.SAXBuilder;
-
-import esg.harvest.publish.impl.MetadataRepositoryCrawlerManagerImpl;
-
-/**
- * Utility class to handle XML documents.
- */
-public class XmlParser {
-	
-	private static final Log LOG = LogFactory.getLog(XmlParser.class);
-	
-	/**
-	 * Flag to validate the XML document.
-	 */
-	private final boolean validate;
-
-	/**
-	 * Constructor.
-	 */
-	public XmlParser(final boolean validate) {
-		//LOG.debug("CONSTRUCTOR: XmlParser(validate)");
-		
-		this.validate = validate;
-	}
-	
-	/**
-	 * Method to parse an XML string into a JDOM document.
-	 * @param xml
-	 * @return
-	 * @throws IOException
-	 * @throws JDOMException
-	 */
-	public Document parseString(final String xml) throws IOException, JDOMException {
-		final StringReader sr = new StringReader(xml);
-		return this.getBuilder().build(sr); 
-	}
-
-	/**
-	 * Method to parse an XML file into a JDOM document.
-	 * @param filepath
-	 * @return
-	 * @throws IOException
-	 * @throws JDOMException
-	 */
-	public Document parseFile(final String filepath) throws IOException, JDOMException {
-		return this.getBuilder().build(filepath);
-	}
-	
-	/**
-	 * Method to obtain an XML parser.
-	 * Note: the XML parser is NOT thread-safe, so it must be re-instantiated every time.
-	 */
-	private SAXBuilder getBuilder() {
-		
-		final SAXBuilder builder = new SAXBuilder(); 
-		builder.setValidation(validate); 
-		builder.setIgnoringElementContentWhitespace(true); 
-		return builder;
-		
-	}
-
-}
+/*******************************************************************************
+ * Copyright (c) 2010 Earth System Grid Federation
+ * ALL RIGHTS RESERVED. 
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. 
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package esg.harvest.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.Namespace;
+import org.jdom.input.SAXBuilder;
+
+import esg.harvest.publish.impl.MetadataRepositoryCrawlerManagerImpl;
+
+/**
+ * Utility class to handle XML documents.
+ */
+public class XmlParser {
+	
+	private static final Log LOG = LogFactory.getLog(XmlParser.class);
+	
+	/**
+	 * Flag to validate the XML document.
+	 */
+	private final boolean validate;
+	
+	/**
+	 * Factory for streaming (StAX) parsers, which is thread-safe once configured.
+	 */
+	private final static XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	/**
+	 * Constructor.
+	 */
+	public XmlParser(final boolean validate) {
+		//LOG.debug("CONSTRUCTOR: XmlParser(validate)");
+		
+		this.validate = validate;
+	}
+	
+	/**
+	 * Method to parse an XML string into a JDOM document.
+	 * @param xml
+	 * @return
+	 * @throws IOException
+	 * @throws JDOMException
+	 */
+	public Document parseString(final String xml) throws IOException, JDOMException {
+		final StringReader sr = new StringReader(xml);
+		return this.getBuilder().build(sr); 
+	}
+
+	/**
+	 * Method to parse an XML stream into a JDOM document.
+	 * Note that the stream is not closed by this method.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 * @throws JDOMException
+	 */
+	public Document parseStream(final InputStream in) throws IOException, JDOMException {
+		return this.getBuilder().build(in);
+	}
+
+	/**
+	 * Method to parse an XML file into a JDOM document.
+	 * @param filepath
+	 * @return
+	 * @throws IOException
+	 * @throws JDOMException
+	 */
+	public Document parseFile(final String filepath) throws IOException, JDOMException {
+		return this.getBuilder().build(filepath);
+	}
+	
+	/**
+	 * Method to create a streaming parser that pulls XML events from a stream,
+	 * so that large documents can be processed one fragment at a time (see {@link #parseElement(XMLStreamReader)}).
+	 * Note that the stream is not closed when the parser is closed.
+	 * @param in
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public XMLStreamReader newStreamReader(final InputStream in) throws XMLStreamException {
+		return INPUT_FACTORY.createXMLStreamReader(in);
+	}
+	
+	/**
+	 * Method to build the JDOM element for the XML subtree starting at the current event of a streaming parser,
+	 * which must be a START_ELEMENT event. The parser is left at the matching END_ELEMENT event,
+	 * so the rest of the document can be streamed while the subtree is processed (and discarded) by the caller.
+	 * Namespaces declared by the ancestors of the subtree are retained by its elements and attributes.
+	 * @param reader
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public Element parseElement(final XMLStreamReader reader) throws XMLStreamException {
+		
+		final Element root = newElement(reader);
+		Element current = root;
+		while (true) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					final Element child = newElement(reader);
+					current.addContent(child);
+					current = child;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (current==root) return root;
+					current = current.getParentElement();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					current.addContent(reader.getText());
+					break;
+				case XMLStreamConstants.END_DOCUMENT:
+					throw new XMLStreamException("Unexpected end of document in element: "+root.getQualifiedName());
+			}
+		}
+		
+	}
+	
+	/**
+	 * Method to create a JDOM element (with its attributes and namespace declarations)
+	 * from the START_ELEMENT event of a streaming parser.
+	 */
+	private static Element newElement(final XMLStreamReader reader) {
+		
+		final Element element = new Element(reader.getLocalName(), getNamespace(reader.getPrefix(), reader.getNamespaceURI()));
+		for (int i=0; i<reader.getNamespaceCount(); i++) {
+			final Namespace ns = getNamespace(reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
+			if (ns.getPrefix().length()>0 && !ns.getPrefix().equals(element.getNamespacePrefix())) {
+				element.addNamespaceDeclaration(ns);
+			}
+		}
+		for (int i=0; i<reader.getAttributeCount(); i++) {
+			element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i), 
+					             getNamespace(reader.getAttributePrefix(i), reader.getAttributeNamespace(i)));
+		}
+		return element;
+		
+	}
+	
+	private static Namespace getNamespace(final String prefix, final String uri) {
+		if (uri==null || uri.length()==0) return Namespace.NO_NAMESPACE;
+		return Namespace.getNamespace(prefix==null ? "" : prefix, uri);
+	}
+	
+	/**
+	 * Method to obtain an XML parser.
+	 * Note: the XML parser is NOT thread-safe, so it must be re-instantiated every time.
+	 */
+	private SAXBuilder getBuilder() {
+		
+		final SAXBuilder builder = new SAXBuilder(); 
+		builder.setValidation(validate); 
+		builder.setIgnoringElementContentWhitespace(true); 
+		return builder;
+		
+	}
+
+}
@@ -0,0 +1,74 @@
+package esg.harvest.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Test class for {@link CompactRecord}.
+ */
+public class CompactRecordTest {
+	
+	/**
+	 * Tests that a compact record exposes the same fields as a {@link RecordImpl} built from the same pairs.
+	 */
+	@Test
+	public void testFields() {
+		
+		final Record expected = this.populate(new RecordImpl("id"));
+		final Record record = this.populate(new CompactRecord("id"));
+		
+		Assert.assertEquals(expected.getFields(), record.getFields());
+		Assert.assertEquals(expected.toString(), record.toString());
+		Assert.assertEquals("Dataset", record.getField(SolrXmlPars.FIELD_TYPE));
+		Assert.assertEquals("v1", record.getField("experiment"));
+		Assert.assertNull(record.getField(SolrXmlPars.FIELD_DESCRIPTION));
+		Assert.assertNull(record.getField("missing"));
+		Assert.assertEquals(3, record.getVersion());
+		Assert.assertEquals(expected.getFieldsLength(10), record.getFieldsLength(10));
+		
+	}
+	
+	/**
+	 * Tests that records can be serialized with field names that did not fit in the interned table.
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		
+		final Record record = this.populate(new CompactRecord("id"));
+		for (int i=0; i<=FieldNames.MAX_SIZE; i++) {
+			record.addField("property_"+i, "value_"+i);
+		}
+		Assert.assertEquals("value_"+FieldNames.MAX_SIZE, record.getField("property_"+FieldNames.MAX_SIZE));
+		Assert.assertTrue(FieldNames.size()<=FieldNames.MAX_SIZE);
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(record);
+		out.close();
+		final Record copy = (Record)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		
+		Assert.assertEquals("id", copy.getId());
+		Assert.assertEquals(record.getFields(), copy.getFields());
+		
+	}
+	
+	private Record populate(final Record record) {
+		record.addField(SolrXmlPars.FIELD_TYPE, "Dataset");
+		record.addField(SolrXmlPars.FIELD_URL, "http://host/a.nc");
+		record.addField("experiment", "v1");
+		record.addField(SolrXmlPars.FIELD_URL, "http://host/b.nc");
+		record.addField(SolrXmlPars.FIELD_VERSION, "3");
+		record.addField(SolrXmlPars.FIELD_DESCRIPTION, " ");
+		record.addField("experiment", "v2");
+		return record;
+	}
+
+}
@@ -0,0 +1,84 @@
+package esg.harvest.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import esg.harvest.query.impl.solr.SolrXmlPars;
+import esg.harvest.utils.ValueCache;
+
+/**
+ * Benchmark comparing the heap used per record by {@link RecordImpl} and {@link CompactRecord} (with and without
+ * a {@link ValueCache}), for records shaped like the THREDDS file records (about 15 fields, a few of them multi-valued).
+ * As when parsing a catalog, each record receives its own copy of the field values, most of them repeated across records.
+ * Usage: java -Xmx1g esg.harvest.core.RecordMemoryBenchmark [number of records, default 100000]
+ */
+public class RecordMemoryBenchmark {
+	
+	public static void main(final String[] args) throws Exception {
+		
+		final int n = args.length>0 ? Integer.parseInt(args[0]) : 100000;
+		
+		// warm up, and intern the field names
+		measure(false, null, 1000);
+		measure(true, null, 1000);
+		
+		final long standard = measure(false, null, n);
+		final long compact = measure(true, null, n);
+		final long shared = measure(true, new ValueCache(ValueCache.DEFAULT_SIZE), n);
+		System.out.println("Records: "+n);
+		System.out.println("RecordImpl:                 "+(standard/n)+" bytes/record");
+		System.out.println("CompactRecord:              "+(compact/n)+" bytes/record ("+(100-100*compact/standard)+"% less)");
+		System.out.println("CompactRecord + ValueCache: "+(shared/n)+" bytes/record ("+(100-100*shared/standard)+"% less)");
+		
+	}
+	
+	/**
+	 * Method to return the heap retained by a number of records.
+	 * @param compact : true to create {@link CompactRecord}s, false to create {@link RecordImpl}s
+	 * @param cache : the cache of shared values for compact records, or null
+	 * @param n : the number of records
+	 */
+	private static long measure(final boolean compact, final ValueCache cache, final int n) {
+		
+		final String[] values = new String[] { "hus_AQUA_AIRS_L3_RetStd-v5_200209-201006.nc", SolrXmlPars.TYPE_FILE, 
+				"obs4cmip5.NASA-JPL.AQUA.AIRS.mon.v1", "http://esg-datanode.jpl.nasa.gov/thredds/fileServer/hus.nc", 
+				"HTTPServer", "GridFTP", "123456789", "20110301", "hus", "specific humidity", "mon", "atmos", "grid" };
+		
+		final long before = usedMemory();
+		final List<Record> records = new ArrayList<Record>(n);
+		for (int i=0; i<n; i++) {
+			final Record record = compact ? new CompactRecord(values[2]+"."+i, cache) : new RecordImpl(values[2]+"."+i);
+			record.addField(SolrXmlPars.FIELD_TITLE, i+values[0]);
+			record.addField(SolrXmlPars.FIELD_TYPE, new String(values[1]));
+			record.addField(SolrXmlPars.FIELD_PARENT_ID, new String(values[2]));
+			record.addField(SolrXmlPars.FIELD_URL, values[3]+i);
+			record.addField(SolrXmlPars.FIELD_SERVICE_TYPE, new String(values[4]));
+			record.addField(SolrXmlPars.FIELD_SERVICE_TYPE, new String(values[5]));
+			record.addField(SolrXmlPars.FIELD_SIZE, new String(values[6]));
+			record.addField(SolrXmlPars.FIELD_VERSION, new String(values[7]));
+			record.addField(SolrXmlPars.FIELD_VARIABLE, new String(values[8]));
+			record.addField(SolrXmlPars.FIELD_CF_VARIABLE, new String(values[9]));
+			record.addField("time_frequency", new String(values[10]));
+			record.addField("realm", new String(values[11]));
+			record.addField("product", new String(values[12]));
+			record.addField(SolrXmlPars.FIELD_METADATA_URL, new String(values[3]));
+			records.add(record);
+		}
+		final long used = usedMemory() - before;
+		if (records.size()!=n) throw new IllegalStateException();
+		return used;
+		
+	}
+	
+	private static long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i=0; i<3; i++) {
+			System.gc();
+			try {
+				Thread.sleep(100);
+			} catch(InterruptedException e) {}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,55 @@
+package esg.harvest.publish.cas;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.impl.RecordProducerImpl;
+import esg.harvest.publish.xml.cas.MetadataHandlerCasRdfImpl;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+import esg.harvest.utils.HttpClient;
+
+/**
+ * Test class for {@link CasCrawler}.
+ */
+public class CasCrawlerTest {
+	
+	private final static ClassPathResource XMLFILE = new ClassPathResource("esg/search/publish/xml/cas/cas_rdf.xml");
+	
+	/**
+	 * Tests that all products of a CAS RDF document are harvested, one at a time.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCrawl() throws Exception {
+		
+		final List<Record> records = new ArrayList<Record>();
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		producer.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				records.add(record);
+			}
+			public void flush() throws Exception {}
+		});
+		
+		final CrawlContext context = new CrawlContext(XMLFILE.getURL().toURI(), true, true);
+		new CasCrawler(new MetadataHandlerCasRdfImpl(), new HttpClient()).crawl(context, producer);
+		
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals(1, context.getDocuments());
+		Assert.assertEquals(context.getUri().toString(), records.get(1).getField(SolrXmlPars.FIELD_METADATA_URL));
+		Assert.assertEquals("MLS-Aura_L2GP-CO_v02-23-c01_2008d107.he5", records.get(0).getId());
+		Assert.assertEquals("he5", records.get(0).getField(SolrXmlPars.FIELD_DATA_FORMAT));
+		Assert.assertNotNull(records.get(1).getField(SolrXmlPars.FIELD_URL));
+		
+	}
+
+}
@@ -0,0 +1,197 @@
+package esg.harvest.publish.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Test class for {@link AsyncRecordConsumer}.
+ */
+public class AsyncRecordConsumerTest {
+	
+	/**
+	 * Tests that all records are processed before the target consumer is flushed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testFlushWaitsForAllRecords() throws Exception {
+		
+		final Set<String> ids = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicInteger flushed = new AtomicInteger();
+		final AsyncRecordConsumer consumer = new AsyncRecordConsumer(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				Thread.sleep(1);
+				ids.add(record.getId());
+			}
+			public void flush() throws Exception {
+				Assert.assertEquals(100, ids.size());
+				flushed.incrementAndGet();
+			}
+		}, 5, 3);
+		
+		for (int i=0; i<100; i++) {
+			consumer.consume(new RecordImpl("id"+i));
+		}
+		consumer.flush();
+		Assert.assertEquals(1, flushed.get());
+		consumer.close();
+		
+	}
+	
+	/**
+	 * Tests that an error raised by the target consumer is reported when the records are flushed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testErrorPropagation() throws Exception {
+		
+		final AsyncRecordConsumer consumer = new AsyncRecordConsumer(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				if (record.getId().equals("bad")) throw new Exception("Cannot index record");
+			}
+			public void flush() throws Exception {}
+		}, 10, 2);
+		
+		consumer.consume(new RecordImpl("good"));
+		consumer.consume(new RecordImpl("bad"));
+		try {
+			consumer.flush();
+			Assert.fail("Flush should report the error");
+		} catch(Exception e) {
+			Assert.assertEquals("Cannot index record", e.getMessage());
+		}
+		
+		// error is reported only once
+		consumer.consume(new RecordImpl("good"));
+		consumer.flush();
+		consumer.close();
+		
+	}
+
+	/**
+	 * Tests that the queued records are processed, and the target consumer flushed, before the consumer is closed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCloseProcessesQueuedRecords() throws Exception {
+		
+		final List<String> ids = Collections.synchronizedList(new ArrayList<String>());
+		final AsyncRecordConsumer consumer = new AsyncRecordConsumer(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				Thread.sleep(1);
+				ids.add(record.getId());
+			}
+			public void flush() throws Exception {
+				ids.add("flush");
+			}
+		}, 20, 2);
+		
+		for (int i=0; i<20; i++) {
+			consumer.consume(new RecordImpl("id"+i));
+		}
+		consumer.close();
+		Assert.assertEquals(21, ids.size());
+		Assert.assertEquals("flush", ids.get(20));
+		
+		// flushing a closed consumer does not block
+		consumer.flush();
+		try {
+			consumer.consume(new RecordImpl("id20"));
+			Assert.fail("A closed consumer should reject records");
+		} catch(IllegalStateException e) {}
+		
+	}
+	
+	/**
+	 * Tests that records overflowing the queue are spilled to the record spool, without blocking the producer.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSpillOverflow() throws Exception {
+		
+		final File file = File.createTempFile("records", ".spool");
+		file.delete();
+		try {
+			final RecordSpool spool = new RecordSpool(file.getPath());
+			final List<String> ids = this.overflow(AsyncRecordConsumer.Overflow.SPILL, spool);
+			Assert.assertEquals("[id0, id1]", ids.toString());
+			
+			final List<String> spilled = new ArrayList<String>();
+			spool.replay(file, new RecordConsumer() {
+				public void consume(final Record record) throws Exception {
+					spilled.add(record.getId());
+				}
+				public void flush() throws Exception {}
+			});
+			Assert.assertEquals("[id2, id3, id4]", spilled.toString());
+		} finally {
+			file.delete();
+		}
+		
+	}
+	
+	/**
+	 * Tests that records overflowing the queue are discarded, without blocking the producer.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDropOverflow() throws Exception {
+		
+		Assert.assertEquals("[id0, id1]", this.overflow(AsyncRecordConsumer.Overflow.DROP, null).toString());
+		
+	}
+	
+	/**
+	 * Method to consume 5 records with a single worker and a queue of 1 record, while the target consumer is blocked
+	 * on the first record: the 3 last records overflow the queue, and are reported as an error when flushed.
+	 * @return the identifiers of the records processed by the target consumer
+	 */
+	private List<String> overflow(final AsyncRecordConsumer.Overflow overflow, final RecordSpool spool) throws Exception {
+		
+		final List<String> ids = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AsyncRecordConsumer consumer = new AsyncRecordConsumer(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				started.countDown();
+				gate.await();
+				ids.add(record.getId());
+			}
+			public void flush() throws Exception {}
+		}, 1, 1, overflow, spool);
+		
+		consumer.consume(new RecordImpl("id0"));
+		started.await();
+		for (int i=1; i<5; i++) {
+			consumer.consume(new RecordImpl("id"+i));
+		}
+		Assert.assertEquals(3, consumer.getOverflows());
+		gate.countDown();
+		try {
+			consumer.flush();
+			Assert.fail("Flush should report the overflowing records");
+		} catch(Exception e) {
+			Assert.assertTrue(e.getMessage().startsWith("3 records overflowed the queue"));
+		}
+		
+		// overflows are reported only once
+		consumer.flush();
+		consumer.close();
+		return ids;
+		
+	}
+
+}
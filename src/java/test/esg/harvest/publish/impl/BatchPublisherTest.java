@@ -0,0 +1,111 @@
+package esg.harvest.publish.impl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.api.PublishingService;
+
+/**
+ * Test class for {@link BatchPublisher} and {@link HarvestManifest}.
+ */
+public class BatchPublisherTest {
+	
+	/**
+	 * Number of repositories being harvested, and maximum number harvested concurrently.
+	 */
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	
+	/**
+	 * Service that publishes 10 records from each repository, and fails for the repositories named "error".
+	 */
+	private final PublishingService publishingService = new PublishingService() {
+		public int publish(final String uri, final boolean recursive, final MetadataRepositoryType type) throws Exception {
+			final int n = running.incrementAndGet();
+			synchronized (maxRunning) {
+				if (n>maxRunning.get()) maxRunning.set(n);
+			}
+			try {
+				Thread.sleep(100);
+				if (uri.contains("error")) throw new Exception("Connection refused");
+				return recursive ? 10 : 1;
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+		public int unpublish(final String uri, final boolean recursive, final MetadataRepositoryType type) throws Exception {
+			return 5;
+		}
+		public void unpublish(final List<String> ids) throws Exception {}
+		public int replay(final String spoolFile) throws Exception {
+			return 0;
+		}
+	};
+	
+	/**
+	 * Tests that the repositories of a manifest are harvested concurrently, each with its own outcome.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRun() throws Exception {
+		
+		final File file = File.createTempFile("manifest", ".txt");
+		try {
+			final FileWriter writer = new FileWriter(file);
+			writer.write("# test manifest\n\n"
+					    +"http://host1/thredds/catalog.xml THREDDS true\n"
+					    +"http://host2/oai?verb=ListRecords&metadataPrefix=oai_dif OAI publish recursive=false\n"
+					    +"http://error/thredds/catalog.xml THREDDS true\n"
+					    +"http://host3/cas CAS unpublish\n");
+			writer.close();
+			
+			final HarvestManifest manifest = new HarvestManifest(file);
+			Assert.assertEquals(4, manifest.getEntries().size());
+			Assert.assertEquals(MetadataRepositoryType.OAI, manifest.getEntries().get(1).getType());
+			Assert.assertFalse(manifest.getEntries().get(1).isRecursive());
+			Assert.assertFalse(manifest.getEntries().get(3).isPublish());
+			
+			final List<BatchPublisher.Result> results = new BatchPublisher(publishingService, 3).run(manifest);
+			Assert.assertEquals(4, results.size());
+			Assert.assertEquals(10, results.get(0).getRecords());
+			Assert.assertEquals(1, results.get(1).getRecords());
+			Assert.assertNotNull(results.get(2).getError());
+			Assert.assertEquals(5, results.get(3).getRecords());
+			Assert.assertEquals(3, maxRunning.get());
+			
+		} finally {
+			file.delete();
+		}
+		
+	}
+	
+	/**
+	 * Tests that invalid manifest lines are reported.
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidManifest() throws Exception {
+		
+		final File file = File.createTempFile("manifest", ".txt");
+		try {
+			final FileWriter writer = new FileWriter(file);
+			writer.write("http://host1/thredds/catalog.xml THREDDS maybe\n");
+			writer.close();
+			new HarvestManifest(file);
+			Assert.fail("Invalid manifest should have been rejected");
+		} catch(Exception e) {
+			Assert.assertTrue(e.getMessage().contains("line 1"));
+		} finally {
+			file.delete();
+		}
+		
+	}
+
+}
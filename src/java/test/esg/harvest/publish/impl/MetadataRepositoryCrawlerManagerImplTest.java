@@ -0,0 +1,189 @@
+package esg.harvest.publish.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.MetadataRepositoryCrawler;
+import esg.harvest.publish.api.MetadataRepositoryType;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.api.RecordProducer;
+import esg.harvest.publish.impl.solr.CommitPolicyImpl;
+import esg.harvest.publish.impl.solr.SolrIndexer;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.HttpStatusException;
+import esg.harvest.utils.RetryPolicy;
+
+/**
+ * Test class for {@link MetadataRepositoryCrawlerManagerImpl}.
+ */
+public class MetadataRepositoryCrawlerManagerImplTest {
+	
+	/**
+	 * Signals that a record of the failing crawl has been rejected by the consumer.
+	 */
+	private final CountDownLatch failed = new CountDownLatch(1);
+	
+	/**
+	 * Crawler notifying 50 records identified by the repository URI, 
+	 * and completing only once the consumer has rejected a record of the failing crawl.
+	 */
+	private final MetadataRepositoryCrawler crawler = new MetadataRepositoryCrawler() {
+		public void crawl(final CrawlContext context, final RecordProducer callback) throws Exception {
+			for (int i=0; i<50; i++) {
+				callback.notify(new RecordImpl(context.getUri()+"#"+i));
+			}
+			failed.await(10, TimeUnit.SECONDS);
+		}
+		public MetadataRepositoryType supports() {
+			return MetadataRepositoryType.THREDDS;
+		}
+	};
+	
+	/**
+	 * Tests that concurrent crawls are flushed independently:
+	 * a crawl only fails because of its own records, and completes once all its records have been processed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentCrawls() throws Exception {
+		
+		final List<String> ids = Collections.synchronizedList(new ArrayList<String>());
+		final MetadataRepositoryCrawlerManagerImpl manager = new MetadataRepositoryCrawlerManagerImpl(new MetadataRepositoryCrawler[] { crawler }, false);
+		manager.setAsync(10, 2, AsyncRecordConsumer.Overflow.BLOCK, null);
+		manager.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				if (record.getId().startsWith("bad")) {
+					failed.countDown();
+					throw new Exception("Cannot index record: "+record.getId());
+				}
+				Thread.sleep(2);
+				ids.add(record.getId());
+			}
+			public void flush() throws Exception {}
+		});
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final Future<Integer> good = executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					return manager.crawl("good", true, MetadataRepositoryType.THREDDS);
+				}
+			});
+			final Future<Integer> bad = executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					return manager.crawl("bad", true, MetadataRepositoryType.THREDDS);
+				}
+			});
+			
+			Assert.assertEquals(50, good.get().intValue());
+			Assert.assertEquals(50, ids.size());
+			try {
+				bad.get();
+				Assert.fail("Crawl should report the errors of its records");
+			} catch(ExecutionException e) {
+				Assert.assertTrue(e.getCause().getMessage().startsWith("Cannot index record: bad#"));
+			}
+		} finally {
+			executor.shutdown();
+			manager.close();
+		}
+		
+	}
+	
+	/**
+	 * Tests that concurrent crawls indexing their records through the same {@link SolrIndexer} are flushed independently:
+	 * the error raised by the timer thread while sending the records of a crawl is only reported to that crawl.
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentIndexing() throws Exception {
+		
+		// Solr server rejecting the messages that contain records of the failing crawl
+		final AtomicInteger indexed = new AtomicInteger();
+		final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/solr", new HttpHandler() {
+			public void handle(final HttpExchange exchange) {
+				try {
+					final InputStream in = exchange.getRequestBody();
+					final ByteArrayOutputStream body = new ByteArrayOutputStream();
+					final byte[] bytes = new byte[4096];
+					for (int n=in.read(bytes); n>=0; n=in.read(bytes)) body.write(bytes, 0, n);
+					final String message = body.toString("UTF-8");
+					if (message.contains(">bad#")) {
+						failed.countDown();
+						exchange.sendResponseHeaders(500, -1);
+						return;
+					}
+					indexed.addAndGet(message.split(">good#", -1).length-1);
+					exchange.sendResponseHeaders(200, -1);
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+		
+		final HttpClient httpClient = new HttpClient();
+		final URL url = new URL("http://127.0.0.1:"+server.getAddress().getPort()+"/solr");
+		final SolrIndexer indexer = new SolrIndexer(url, new CommitPolicyImpl(1), httpClient, new RetryPolicy(), new RecordSpool(null), 1000, 0L, 20L);
+		final MetadataRepositoryCrawlerManagerImpl manager = new MetadataRepositoryCrawlerManagerImpl(new MetadataRepositoryCrawler[] { crawler }, false);
+		manager.setAsync(10, 2, AsyncRecordConsumer.Overflow.BLOCK, null);
+		manager.subscribe(indexer);
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final Future<Integer> good = executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					return manager.crawl("good", true, MetadataRepositoryType.THREDDS);
+				}
+			});
+			final Future<Integer> bad = executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					return manager.crawl("bad", true, MetadataRepositoryType.THREDDS);
+				}
+			});
+			
+			Assert.assertEquals(50, good.get().intValue());
+			Assert.assertEquals(50, indexed.get());
+			try {
+				bad.get();
+				Assert.fail("Crawl should report the errors raised while sending its records");
+			} catch(ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof HttpStatusException);
+			}
+		} finally {
+			executor.shutdown();
+			manager.close();
+			httpClient.close();
+			server.stop(0);
+		}
+		
+	}
+
+}
@@ -0,0 +1,116 @@
+package esg.harvest.publish.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Test class for {@link RecordProducerImpl}.
+ */
+public class RecordProducerImplTest {
+	
+	/**
+	 * Tests that in asynchronous mode a blocked consumer does not hold back the other consumers,
+	 * and that flushing waits for all consumers to process all records.
+	 * @throws Exception
+	 */
+	@Test
+	public void testAsyncFanOut() throws Exception {
+		
+		final CountDownLatch gate = new CountDownLatch(1);
+		final List<String> slow = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> fast = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch fastDone = new CountDownLatch(10);
+		
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		producer.setAsync(100, 1, AsyncRecordConsumer.Overflow.BLOCK, null);
+		producer.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				gate.await();
+				slow.add(record.getId());
+			}
+			public void flush() throws Exception {}
+		});
+		producer.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				fast.add(record.getId());
+				fastDone.countDown();
+			}
+			public void flush() throws Exception {}
+		});
+		
+		for (int i=0; i<10; i++) {
+			producer.notify(new RecordImpl("id"+i));
+		}
+		fastDone.await();
+		Assert.assertEquals(10, fast.size());
+		Assert.assertEquals(0, slow.size());
+		
+		gate.countDown();
+		producer.flush();
+		Assert.assertEquals(fast, slow); // records are processed in order by a single worker
+		producer.close();
+		
+	}
+	
+	/**
+	 * Tests that an un-subscribed consumer no longer receives records.
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnsubscribe() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		final RecordConsumer consumer = new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				ids.add(record.getId());
+			}
+			public void flush() throws Exception {}
+		};
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		producer.subscribe(consumer);
+		producer.notify(new RecordImpl("id1"));
+		producer.unsubscribe(consumer);
+		producer.notify(new RecordImpl("id2"));
+		Assert.assertEquals("[id1]", ids.toString());
+		
+	}
+	
+	/**
+	 * Tests that in asynchronous mode the records queued for an un-subscribed consumer are still processed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testAsyncUnsubscribe() throws Exception {
+		
+		final List<String> ids = Collections.synchronizedList(new ArrayList<String>());
+		final RecordConsumer consumer = new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				Thread.sleep(1);
+				ids.add(record.getId());
+			}
+			public void flush() throws Exception {}
+		};
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		producer.setAsync(100, 1, AsyncRecordConsumer.Overflow.BLOCK, null);
+		producer.subscribe(consumer);
+		for (int i=0; i<10; i++) {
+			producer.notify(new RecordImpl("id"+i));
+		}
+		producer.unsubscribe(consumer);
+		producer.notify(new RecordImpl("id10"));
+		producer.flush();
+		Assert.assertEquals(10, ids.size());
+		
+	}
+
+}
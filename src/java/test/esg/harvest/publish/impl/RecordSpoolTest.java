@@ -0,0 +1,107 @@
+package esg.harvest.publish.impl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.publish.api.RecordConsumer;
+
+/**
+ * Test class for {@link RecordSpool}.
+ */
+public class RecordSpoolTest {
+	
+	private File file;
+	
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("records", ".spool");
+		file.delete();
+	}
+	
+	@After
+	public void cleanup() {
+		file.delete();
+		new File(file.getPath()+".replay").delete();
+	}
+	
+	/**
+	 * Tests that spooled records are replayed with all their fields, and that the spool is emptied.
+	 * @throws Exception
+	 */
+	@Test
+	public void testAppendAndReplay() throws Exception {
+		
+		final RecordSpool spool = new RecordSpool(file.getPath());
+		Assert.assertTrue(spool.isEnabled());
+		
+		final Record record = new RecordImpl("id1");
+		record.addField("title", "A \u00e9t\u00e9 title");
+		record.addField("variable", "tas");
+		record.addField("variable", "pr");
+		spool.append(Arrays.asList(new Record[] { record }));
+		spool.append(Arrays.asList(new Record[] { new RecordImpl("id2"), new RecordImpl("id3") }));
+		
+		final CollectingConsumer consumer = new CollectingConsumer();
+		Assert.assertEquals(3, spool.replay(file, consumer));
+		Assert.assertEquals(3, consumer.records.size());
+		Assert.assertEquals(1, consumer.flushes);
+		
+		final Record replayed = consumer.records.get(0);
+		Assert.assertEquals("id1", replayed.getId());
+		Assert.assertEquals(record.getFields(), replayed.getFields());
+		Assert.assertEquals("id3", consumer.records.get(2).getId());
+		
+		Assert.assertFalse(file.exists());
+		Assert.assertEquals(0, spool.replay(file, consumer));
+		
+	}
+	
+	/**
+	 * Tests that a block truncated by an interrupted write is ignored.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTruncatedBlock() throws Exception {
+		
+		final RecordSpool spool = new RecordSpool(file.getPath());
+		spool.append(Arrays.asList(new Record[] { new RecordImpl("id1") }));
+		final long length = file.length();
+		spool.append(Arrays.asList(new Record[] { new RecordImpl("id2") }));
+		
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(length + 10);
+		raf.close();
+		
+		final CollectingConsumer consumer = new CollectingConsumer();
+		Assert.assertEquals(1, spool.replay(file, consumer));
+		Assert.assertEquals("id1", consumer.records.get(0).getId());
+		
+	}
+	
+	private static class CollectingConsumer implements RecordConsumer {
+		
+		final List<Record> records = new ArrayList<Record>();
+		int flushes = 0;
+		
+		public void consume(final Record record) throws Exception {
+			records.add(record);
+		}
+		
+		public void flush() throws Exception {
+			flushes++;
+		}
+		
+	}
+
+}
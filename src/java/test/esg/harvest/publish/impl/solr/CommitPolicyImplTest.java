@@ -0,0 +1,50 @@
+package esg.harvest.publish.impl.solr;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class CommitPolicyImplTest {
+	
+	/**
+	 * Tests that a commit is requested every N documents, and at the end of the crawl.
+	 */
+	@Test
+	public void testDocumentsMode() {
+		
+		final CommitPolicy policy = new CommitPolicyImpl("documents", 0L, 10);
+		Assert.assertFalse(policy.isCommitRequired(4));
+		Assert.assertFalse(policy.isCommitRequired(4));
+		Assert.assertTrue(policy.isCommitRequired(4));
+		Assert.assertFalse(policy.isCommitRequired(4));
+		Assert.assertTrue(policy.isCommitRequiredOnFlush());
+		Assert.assertEquals(0L, policy.getCommitWithin());
+		
+	}
+	
+	/**
+	 * Tests that no commit is ever requested when documents are committed by the server.
+	 */
+	@Test
+	public void testWithinMode() {
+		
+		final CommitPolicy policy = new CommitPolicyImpl("WITHIN", 5000L, 10);
+		Assert.assertFalse(policy.isCommitRequired(100));
+		Assert.assertFalse(policy.isCommitRequiredOnFlush());
+		Assert.assertEquals(5000L, policy.getCommitWithin());
+		
+	}
+	
+	/**
+	 * Tests that a single commit is requested at the end of the crawl.
+	 */
+	@Test
+	public void testCrawlMode() {
+		
+		final CommitPolicy policy = new CommitPolicyImpl("CRAWL", 0L, 0);
+		Assert.assertFalse(policy.isCommitRequired(100000));
+		Assert.assertTrue(policy.isCommitRequiredOnFlush());
+		
+	}
+
+}
@@ -0,0 +1,37 @@
+package esg.harvest.publish.impl.solr;
+
+import junit.framework.Assert;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Test class for conversion of records into SolrJ documents.
+ */
+public class SolrServerIndexerTest {
+	
+	/**
+	 * Tests that all record fields and values are copied to the document.
+	 */
+	@Test
+	public void testToSolrInputDocument() {
+		
+		final Record record = new RecordImpl("file");
+		record.addField(SolrXmlPars.FIELD_TYPE, SolrXmlPars.TYPE_FILE);
+		record.addField(SolrXmlPars.FIELD_PARENT_ID, "dataset");
+		record.addField("variable", "ta");
+		record.addField("variable", "ua");
+		
+		final SolrInputDocument doc = SolrServerIndexer.toSolrInputDocument(record);
+		Assert.assertEquals("file", doc.getFieldValue(SolrXmlPars.FIELD_ID));
+		Assert.assertEquals("dataset", doc.getFieldValue(SolrXmlPars.FIELD_PARENT_ID));
+		Assert.assertEquals(2, doc.getFieldValues("variable").size());
+		Assert.assertEquals(4, doc.getFieldNames().size());
+		
+	}
+
+}
@@ -0,0 +1,85 @@
+package esg.harvest.publish.impl.solr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Test class for {@link SolrShardRouter}.
+ */
+public class SolrShardRouterTest {
+	
+	/**
+	 * Tests that file records are routed to the same shard as their parent dataset.
+	 * @throws Exception
+	 */
+	@Test
+	public void testParentChildColocation() throws Exception {
+		
+		final CollectingConsumer[] shards = new CollectingConsumer[] { new CollectingConsumer(), new CollectingConsumer(), new CollectingConsumer() };
+		final SolrShardRouter router = new SolrShardRouter(Arrays.asList(new RecordConsumer[] { shards[0], shards[1], shards[2] })) {};
+		
+		for (int i=0; i<20; i++) {
+			final String datasetId = "dataset"+i;
+			router.consume(new RecordImpl(datasetId));
+			for (int j=0; j<5; j++) {
+				final Record file = new RecordImpl(datasetId+".file"+j);
+				file.addField(SolrXmlPars.FIELD_PARENT_ID, datasetId);
+				router.consume(file);
+			}
+		}
+		router.flush();
+		
+		int total = 0;
+		for (final CollectingConsumer shard : shards) {
+			Assert.assertEquals(1, shard.flushes);
+			for (final Record record : shard.records) {
+				Assert.assertSame(shard, shards[SolrShardRouter.getShard(SolrShardRouter.getRoutingKey(record), 3)]);
+				Assert.assertTrue(SolrShardRouter.getRoutingKey(record).startsWith("dataset"));
+			}
+			Assert.assertEquals(0, shard.records.size() % 6);
+			Assert.assertTrue(shard.records.size()>0);
+			total += shard.records.size();
+		}
+		Assert.assertEquals(120, total);
+		
+	}
+	
+	/**
+	 * Tests that the shard assignment is stable.
+	 */
+	@Test
+	public void testStableHash() {
+		
+		Assert.assertEquals(0, SolrShardRouter.getShard("any", 1));
+		Assert.assertEquals(SolrShardRouter.getShard("dataset1", 4), SolrShardRouter.getShard(new String("dataset1"), 4));
+		// CRC32("dataset1") = 0x05B89D22
+		Assert.assertEquals((int)(0x05B89D22L % 7), SolrShardRouter.getShard("dataset1", 7));
+		
+	}
+	
+	private static class CollectingConsumer implements RecordConsumer {
+		
+		final List<Record> records = new ArrayList<Record>();
+		int flushes = 0;
+		
+		public void consume(final Record record) throws Exception {
+			records.add(record);
+		}
+		
+		public void flush() throws Exception {
+			flushes++;
+		}
+		
+	}
+
+}
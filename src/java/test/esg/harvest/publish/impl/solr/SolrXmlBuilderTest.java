@@ -0,0 +1,79 @@
+package esg.harvest.publish.impl.solr;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+import esg.harvest.utils.XmlParser;
+
+public class SolrXmlBuilderTest {
+	
+	final SolrXmlBuilder solrMessageHandler = new SolrXmlBuilder();
+	
+	final Record record1 = new RecordImpl("dataset");
+	final Record record2 = new RecordImpl("file");
+	
+	@Before
+	public void setup() {
+		
+		record1.addField(SolrXmlPars.FIELD_TITLE, "dataset title");
+		record1.addField(SolrXmlPars.FIELD_TYPE, SolrXmlPars.TYPE_DATASET);
+		record2.addField(SolrXmlPars.FIELD_TITLE, "file title");
+		record2.addField(SolrXmlPars.FIELD_TYPE, SolrXmlPars.TYPE_FILE);
+		record2.addField(SolrXmlPars.FIELD_PARENT_ID, "dataset");
+		
+	}
+	
+	/**
+	 * Tests generation of a single <add> XML document containing several records.
+	 * @throws Exception
+	 */
+	@Test
+	public void testBuildAddMessageMultipleRecords() throws Exception {
+		
+		final List<Record> records = Arrays.asList(new Record[] { record1, record2 });
+		final String xml = solrMessageHandler.buildAddMessage(records, false);
+		
+		final Document doc = new XmlParser(false).parseString(xml);
+		final Element addEl = doc.getRootElement();
+		Assert.assertEquals(SolrXmlPars.ELEMENT_ADD, addEl.getName());
+		final List<?> docEls = addEl.getChildren(SolrXmlPars.ELEMENT_DOC);
+		Assert.assertEquals(2, docEls.size());
+		
+		// first field of each document is the record identifier
+		Assert.assertEquals("dataset", ((Element)((Element)docEls.get(0)).getChildren().get(0)).getText());
+		Assert.assertEquals("file", ((Element)((Element)docEls.get(1)).getChildren().get(0)).getText());
+		Assert.assertEquals(4, ((Element)docEls.get(1)).getChildren(SolrXmlPars.ELEMENT_FIELD).size());
+		
+	}
+
+	/**
+	 * Tests generation of a single <delete> XML document for several records,
+	 * with one combined query for all children records.
+	 * @throws Exception
+	 */
+	@Test
+	public void testBuildDeleteMessageMultipleRecords() throws Exception {
+		
+		final List<String> ids = Arrays.asList(new String[] { "dataset1", "dataset \"2\"" });
+		final String xml = solrMessageHandler.buildDeleteMessage(ids, false);
+		
+		final Document doc = new XmlParser(false).parseString(xml);
+		final Element deleteEl = doc.getRootElement();
+		Assert.assertEquals(SolrXmlPars.ELEMENT_DELETE, deleteEl.getName());
+		Assert.assertEquals(2, deleteEl.getChildren(SolrXmlPars.ELEMENT_ID).size());
+		Assert.assertEquals(1, deleteEl.getChildren(SolrXmlPars.ELEMENT_QUERY).size());
+		Assert.assertEquals("parent_id:(\"dataset1\" OR \"dataset \\\"2\\\"\")", deleteEl.getChildText(SolrXmlPars.ELEMENT_QUERY));
+		
+	}
+
+}
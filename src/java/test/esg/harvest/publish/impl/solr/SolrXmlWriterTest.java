@@ -0,0 +1,72 @@
+package esg.harvest.publish.impl.solr;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.junit.Before;
+import org.junit.Test;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+import esg.harvest.utils.XmlParser;
+
+public class SolrXmlWriterTest {
+	
+	final SolrXmlWriter writer = new SolrXmlWriter();
+	
+	final SolrXmlBuilder builder = new SolrXmlBuilder();
+	
+	final Record record = new RecordImpl("test id");
+	
+	@Before
+	public void setup() {
+		
+		record.addField(SolrXmlPars.FIELD_TITLE, "test title & <markup>");
+		record.addField(SolrXmlPars.FIELD_TYPE, SolrXmlPars.TYPE_DATASET);
+		record.addField(SolrXmlPars.FIELD_DESCRIPTION, "caf\u00e9 \u00b0C");
+		record.addField("property", "value A");
+		record.addField("property", "value B");
+		
+	}
+	
+	/**
+	 * Tests that the streamed <add> message is equivalent to the message built as a JDOM tree.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteAddMessage() throws Exception {
+		
+		final List<Record> records = Arrays.asList(new Record[] { record, record });
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.writeAddMessage(records, 1000L, out);
+		
+		Assert.assertEquals( compact(builder.buildAddMessage(records, 1000L, false)), compact(out.toString("UTF-8")) );
+		
+	}
+	
+	/**
+	 * Tests that the streamed <delete> message is equivalent to the message built as a JDOM tree.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteDeleteMessage() throws Exception {
+		
+		final List<String> ids = Arrays.asList(new String[]{ "123", "456"} );
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.writeDeleteMessage(ids, out);
+		
+		Assert.assertEquals( compact(builder.buildDeleteMessage(ids, false)), compact(out.toString("UTF-8")) );
+		
+	}
+	
+	private String compact(final String xml) throws Exception {
+		return new XMLOutputter(Format.getCompactFormat()).outputString( new XmlParser(false).parseString(xml).getRootElement() );
+	}
+
+}
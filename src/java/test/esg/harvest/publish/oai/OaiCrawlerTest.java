@@ -0,0 +1,443 @@
+package esg.harvest.publish.oai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import esg.harvest.core.Record;
+import esg.harvest.core.RecordImpl;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.impl.RecordProducerImpl;
+import esg.harvest.publish.xml.MetadataHandler;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.PrefetchPolicy;
+import esg.harvest.utils.RetryPolicy;
+
+/**
+ * Test class for {@link OaiCrawler}.
+ */
+public class OaiCrawlerTest {
+	
+	private final static ClassPathResource XMLFILE = new ClassPathResource("esg/search/publish/oai/oai_dif.xml");
+	
+	/**
+	 * Handler that creates one record for each metadata document, identified by the document text.
+	 */
+	private final static MetadataHandler HANDLER = new MetadataHandler() {
+		public List<Record> parse(final Element root, final CrawlContext context) {
+			return Collections.singletonList((Record)new RecordImpl(root.getTextTrim()));
+		}
+	};
+	
+	private HttpServer server;
+	
+	/**
+	 * Requests received by the server.
+	 */
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+	
+	/**
+	 * Number of requests rejected for flow control.
+	 */
+	private int rejected = 0;
+	
+	/**
+	 * Signals that the first record of a streamed page has been notified.
+	 */
+	private final CountDownLatch notified = new CountDownLatch(1);
+	
+	private File stateFile;
+	
+	private File identifiersFile;
+	
+	/**
+	 * Identifiers of the records sent for removal.
+	 */
+	private final List<String> removed = new ArrayList<String>();
+	
+	@Before
+	public void setup() throws Exception {
+		
+		// OAI provider serving a list of 5 records in 3 pages
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/oai", new HttpHandler() {
+			public void handle(final HttpExchange exchange) {
+				try {
+					final String query = exchange.getRequestURI().getQuery();
+					requests.add(query);
+					String body;
+					if (query.equals("verb=ListRecords&metadataPrefix=test")) {
+						body = page("<record>"+record("a")+"</record><record>"+record("b")+"</record>", "t1");
+					} else if (query.equals("verb=ListRecords&resumptionToken=t1")) {
+						if (rejected++==0) {
+							exchange.getResponseHeaders().add("Retry-After", "0");
+							exchange.sendResponseHeaders(503, -1);
+							return;
+						}
+						body = page("<record>"+record("c")+"</record><record>"+record("d")+"</record>", "t2");
+					} else if (query.equals("verb=ListRecords&metadataPrefix=test&from=2011-02-01T00:00:00Z")) {
+						body = page("<record>"+record("f")+"</record><record>"+deleted("b")+"</record>", "");
+					} else if (query.equals("verb=ListRecords&resumptionToken=t2")) {
+						body = page("<record>"+record("e")+"</record>", "");
+					} else if (query.startsWith("verb=ListRecords&metadataPrefix=test&set=")) {
+						// sets holding a single record, unchanged since it was first harvested
+						body = query.contains("from=") 
+							   ? "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\"><error code=\"noRecordsMatch\">No records</error></OAI-PMH>"
+							   : page("<record>"+record("set"+query.charAt(41))+"</record>", "");
+					} else {
+						body = "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\"><error code=\"badResumptionToken\">Expired</error></OAI-PMH>";
+					}
+					final byte[] bytes = body.getBytes("UTF-8");
+					exchange.sendResponseHeaders(200, bytes.length);
+					final OutputStream out = exchange.getResponseBody();
+					out.write(bytes);
+					out.close();
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		// OAI provider that completes its response only after the first record has been notified
+		server.createContext("/stream", new HttpHandler() {
+			public void handle(final HttpExchange exchange) {
+				try {
+					exchange.sendResponseHeaders(200, 0);
+					final OutputStream out = exchange.getResponseBody();
+					final String body = page("<record>"+record("a")+"</record><record>"+record("b")+"</record>", "");
+					final int i = body.indexOf("<record>", body.indexOf("</record>"));
+					out.write(body.substring(0, i).getBytes("UTF-8"));
+					out.flush();
+					notified.await(10, TimeUnit.SECONDS);
+					out.write(body.substring(i).getBytes("UTF-8"));
+					out.close();
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+		
+		stateFile = File.createTempFile("oai", ".properties");
+		stateFile.delete();
+		identifiersFile = File.createTempFile("oai", ".properties");
+		identifiersFile.delete();
+		
+	}
+	
+	@After
+	public void cleanup() {
+		server.stop(0);
+		stateFile.delete();
+		identifiersFile.delete();
+	}
+	
+	/**
+	 * Tests crawling of a OAI/DIF XML document (as serialized to the file system).
+	 * @throws Exception
+	 */
+	@Test
+	public void testCrawlDocument() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		new OaiCrawler(HANDLER, new HttpClient()).crawl(new CrawlContext(XMLFILE.getURL().toURI(), true, true), this.newProducer(ids, null));
+		
+		// note: "deleted" records are ignored
+		Assert.assertEquals(2, ids.size());
+		
+	}
+	
+	/**
+	 * Tests that all pages of a list are harvested, retrying the requests rejected for flow control.
+	 * @throws Exception
+	 */
+	@Test
+	public void testResumptionTokens() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		this.newCrawler(0).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		
+		Assert.assertEquals("[a, b, c, d, e]", ids.toString());
+		Assert.assertEquals(4, requests.size());
+		
+	}
+	
+	/**
+	 * Tests that all pages of a list are harvested when the next pages are fetched ahead.
+	 * @throws Exception
+	 */
+	@Test
+	public void testPrefetching() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		this.newCrawler(0, new PrefetchPolicy(2, 1024*1024)).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		
+		Assert.assertEquals("[a, b, c, d, e]", ids.toString());
+		Assert.assertEquals(4, requests.size());
+		
+	}
+	
+	/**
+	 * Tests that records are notified while the response is still being streamed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreaming() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		final RecordProducerImpl producer = this.newProducer(ids, null);
+		producer.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				notified.countDown();
+			}
+			public void flush() throws Exception {}
+		});
+		final long start = System.currentTimeMillis();
+		this.newCrawler(0).crawl(new CrawlContext(new URI("http://127.0.0.1:"+server.getAddress().getPort()+"/stream?verb=ListRecords&metadataPrefix=test"), 
+				                                  true, true), producer);
+		Assert.assertEquals("[a, b]", ids.toString());
+		Assert.assertTrue(System.currentTimeMillis()-start < 10000);
+		
+	}
+	
+	/**
+	 * Tests that an interrupted harvest resumes from the last checkpointed page.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCheckpoint() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		try {
+			this.newCrawler(1).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, "e"));
+			Assert.fail("Harvest should have been interrupted");
+		} catch(Exception e) {
+			Assert.assertEquals("[a, b, c, d]", ids.toString());
+		}
+		Assert.assertEquals("t2", new OaiHarvestStateStore(stateFile.getPath()).getResumptionToken(this.getListURI().toString()));
+		
+		ids.clear();
+		requests.clear();
+		this.newCrawler(1).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[e]", ids.toString());
+		Assert.assertEquals("[verb=ListRecords&resumptionToken=t2]", requests.toString());
+		Assert.assertNull(new OaiHarvestStateStore(stateFile.getPath()).getResumptionToken(this.getListURI().toString()));
+		
+	}
+	
+	/**
+	 * Tests that errors raised by the consumers are not retried as request errors.
+	 * @throws Exception
+	 */
+	@Test
+	public void testConsumerError() throws Exception {
+		
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		producer.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				throw new IOException("Index unavailable");
+			}
+			public void flush() throws Exception {}
+		});
+		try {
+			this.newCrawler(0).crawl(new CrawlContext(this.getListURI(), true, true), producer);
+			Assert.fail("Harvest should have failed");
+		} catch(IOException e) {
+			Assert.assertEquals("Index unavailable", e.getMessage());
+		}
+		Assert.assertEquals(1, requests.size());
+		
+	}
+	
+	/**
+	 * Tests that a harvest restarts from the first page if the checkpointed token has expired.
+	 * @throws Exception
+	 */
+	@Test
+	public void testExpiredCheckpoint() throws Exception {
+		
+		new OaiHarvestStateStore(stateFile.getPath()).setResumptionToken(this.getListURI().toString(), "expired", "2011-01-01T00:00:00Z");
+		
+		final List<String> ids = new ArrayList<String>();
+		this.newCrawler(1).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[a, b, c, d, e]", ids.toString());
+		
+	}
+	
+	/**
+	 * Tests that publishing harvests only request the records changed since the previous harvest.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSelectiveHarvest() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		this.newCrawler(0).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[a, b, c, d, e]", ids.toString());
+		
+		ids.clear();
+		requests.clear();
+		this.newCrawler(0).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[f]", ids.toString());
+		Assert.assertEquals("[verb=ListRecords&metadataPrefix=test&from=2011-02-01T00:00:00Z]", requests.toString());
+		
+		// full harvest (e.g. for unpublishing)
+		ids.clear();
+		this.newCrawler(0).crawl(new CrawlContext(this.getListURI(), true, false), this.newProducer(ids, null));
+		Assert.assertEquals("[a, b, c, d, e]", ids.toString());
+		
+	}
+	
+	/**
+	 * Tests that the date of the last harvest is kept for each set of a provider,
+	 * and that lists bounded by an 'until' date are harvested in full.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSelectiveHarvestOfSets() throws Exception {
+		
+		final String listURI = "http://127.0.0.1:"+server.getAddress().getPort()+"/oai?verb=ListRecords&metadataPrefix=test&set=";
+		final List<String> ids = new ArrayList<String>();
+		this.newCrawler(0).crawl(new CrawlContext(new URI(listURI+"A"), true, true), this.newProducer(ids, null));
+		this.newCrawler(0).crawl(new CrawlContext(new URI(listURI+"B"), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[setA, setB]", ids.toString());
+		Assert.assertEquals("[verb=ListRecords&metadataPrefix=test&set=A, verb=ListRecords&metadataPrefix=test&set=B]", requests.toString());
+		
+		ids.clear();
+		requests.clear();
+		this.newCrawler(0).crawl(new CrawlContext(new URI(listURI+"A"), true, true), this.newProducer(ids, null));
+		this.newCrawler(0).crawl(new CrawlContext(new URI(listURI+"C&until=2011-01-31"), true, true), this.newProducer(ids, null));
+		this.newCrawler(0).crawl(new CrawlContext(new URI(listURI+"C&until=2011-01-31"), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[setC, setC]", ids.toString());
+		Assert.assertEquals("[verb=ListRecords&metadataPrefix=test&set=A&from=2011-02-01T00:00:00Z, "
+				           +"verb=ListRecords&metadataPrefix=test&set=C&until=2011-01-31, "
+				           +"verb=ListRecords&metadataPrefix=test&set=C&until=2011-01-31]", requests.toString());
+		
+	}
+	
+	/**
+	 * Tests that records reported as deleted are removed within the same harvest.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeletedRecords() throws Exception {
+		
+		final List<String> ids = new ArrayList<String>();
+		this.newCrawler(0).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		Assert.assertTrue(removed.isEmpty());
+		Assert.assertEquals("[b]", new OaiIdentifierStore(identifiersFile.getPath()).getRecordIds("oai:b").toString());
+		
+		ids.clear();
+		this.newCrawler(0).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[f]", ids.toString());
+		Assert.assertEquals("[b, flush]", removed.toString());
+		Assert.assertTrue(new OaiIdentifierStore(identifiersFile.getPath()).getRecordIds("oai:b").isEmpty());
+		Assert.assertEquals("[f]", new OaiIdentifierStore(identifiersFile.getPath()).getRecordIds("oai:f").toString());
+		
+	}
+	
+	/**
+	 * Tests that the identifiers of the search records created from the OAI records of a harvest
+	 * are stored only once these records have been indexed.
+	 * @throws Exception
+	 */
+	@Test
+	public void testIdentifiersOfFailedHarvest() throws Exception {
+		
+		final OaiIdentifierStore identifierStore = new OaiIdentifierStore(identifiersFile.getPath());
+		final List<String> ids = new ArrayList<String>();
+		try {
+			new OaiCrawler(HANDLER, new HttpClient(), new RetryPolicy(), new OaiHarvestStateStore(stateFile.getPath()), 0, null, 
+					       identifierStore, new PrefetchPolicy()).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, "c"));
+			Assert.fail("Harvest should have been interrupted");
+		} catch(Exception e) {
+			Assert.assertEquals("[a, b]", ids.toString());
+		}
+		Assert.assertTrue(identifierStore.getRecordIds("oai:a").isEmpty());
+		
+		new OaiCrawler(HANDLER, new HttpClient(), new RetryPolicy(), new OaiHarvestStateStore(stateFile.getPath()), 0, null, 
+				       identifierStore, new PrefetchPolicy()).crawl(new CrawlContext(this.getListURI(), true, true), this.newProducer(ids, null));
+		Assert.assertEquals("[a]", identifierStore.getRecordIds("oai:a").toString());
+		Assert.assertEquals("[e]", new OaiIdentifierStore(identifiersFile.getPath()).getRecordIds("oai:e").toString());
+		
+	}
+	
+	private OaiCrawler newCrawler(final int checkpointPages) {
+		return this.newCrawler(checkpointPages, new PrefetchPolicy());
+	}
+	
+	private OaiCrawler newCrawler(final int checkpointPages, final PrefetchPolicy prefetchPolicy) {
+		return new OaiCrawler(HANDLER, new HttpClient(), new RetryPolicy(3, 10L, 100L), 
+				              new OaiHarvestStateStore(stateFile.getPath()), checkpointPages, 
+				              new RecordConsumer() {
+									public void consume(final Record record) throws Exception {
+										removed.add(record.getId());
+									}
+									public void flush() throws Exception {
+										removed.add("flush");
+									}
+				              }, new OaiIdentifierStore(identifiersFile.getPath()), prefetchPolicy);
+	}
+	
+	private URI getListURI() throws Exception {
+		return new URI("http://127.0.0.1:"+server.getAddress().getPort()+"/oai?verb=ListRecords&metadataPrefix=test");
+	}
+	
+	/**
+	 * Method to create a producer that collects the identifiers of the notified records.
+	 * @param ids
+	 * @param failingId : identifier of the record that interrupts the harvest, if any
+	 * @return
+	 */
+	private RecordProducerImpl newProducer(final List<String> ids, final String failingId) {
+		
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		producer.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				if (record.getId().equals(failingId)) throw new Exception("Harvest interrupted");
+				ids.add(record.getId());
+			}
+			public void flush() throws Exception {}
+		});
+		return producer;
+		
+	}
+	
+	private static String page(final String records, final String token) {
+		return "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\"><responseDate>2011-02-01T00:00:00Z</responseDate><ListRecords>"+records
+			  +"<resumptionToken>"+token+"</resumptionToken></ListRecords></OAI-PMH>";
+	}
+	
+	private static String deleted(final String id) {
+		return "<header status=\"deleted\"><identifier>oai:"+id+"</identifier><datestamp>2011-01-02</datestamp></header>";
+	}
+	
+	private static String record(final String id) {
+		return "<header><identifier>oai:"+id+"</identifier><datestamp>2011-01-01</datestamp></header>"
+		      +"<metadata><test xmlns=\"urn:test\">"+id+"</test></metadata>";
+	}
+
+}
@@ -0,0 +1,83 @@
+package esg.harvest.publish.oai;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link OaiIdentifierStore}.
+ */
+public class OaiIdentifierStoreTest {
+	
+	private File file;
+	
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("oai", ".properties");
+		file.delete();
+	}
+	
+	@After
+	public void cleanup() {
+		file.delete();
+	}
+	
+	/**
+	 * Tests that updates are appended to the file, and override the previous entries when the file is loaded.
+	 * @throws Exception
+	 */
+	@Test
+	public void testUpdate() throws Exception {
+		
+		final OaiIdentifierStore store = new OaiIdentifierStore(file.getPath());
+		store.update(this.mapping("oai:a", "a1", "a2"));
+		store.update(this.mapping("oai:b", "b1"));
+		Assert.assertEquals(2, this.countEntries());
+		
+		store.update(this.mapping("oai:a", "a3"));
+		store.update(this.mapping("oai:b"));
+		store.update(this.mapping("oai:a", "a3")); // unchanged: not appended
+		Assert.assertEquals(4, this.countEntries());
+		Assert.assertEquals("[a3]", store.getRecordIds("oai:a").toString());
+		Assert.assertTrue(store.getRecordIds("oai:b").isEmpty());
+		
+		final OaiIdentifierStore reloaded = new OaiIdentifierStore(file.getPath());
+		Assert.assertEquals("[a3]", reloaded.getRecordIds("oai:a").toString());
+		Assert.assertTrue(reloaded.getRecordIds("oai:b").isEmpty());
+		
+	}
+	
+	private Map<String, List<String>> mapping(final String oaiIdentifier, final String... ids) {
+		final Map<String, List<String>> mapping = new HashMap<String, List<String>>();
+		mapping.put(oaiIdentifier, new ArrayList<String>(Arrays.asList(ids)));
+		return mapping;
+	}
+	
+	/**
+	 * @return the number of (non comment) lines of the file
+	 */
+	private int countEntries() throws Exception {
+		int count = 0;
+		final BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			for (String line = reader.readLine(); line!=null; line = reader.readLine()) {
+				if (!line.startsWith("#")) count++;
+			}
+		} finally {
+			reader.close();
+		}
+		return count;
+	}
+
+}
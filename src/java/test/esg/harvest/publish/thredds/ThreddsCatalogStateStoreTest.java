@@ -0,0 +1,90 @@
+package esg.harvest.publish.thredds;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import esg.harvest.publish.thredds.ThreddsCatalogStateStore.CatalogState;
+
+/**
+ * Test class for {@link ThreddsCatalogStateStore}.
+ */
+public class ThreddsCatalogStateStoreTest {
+	
+	private File stateFile;
+	
+	@Before
+	public void setup() throws Exception {
+		stateFile = File.createTempFile("thredds", ".state");
+		stateFile.delete();
+	}
+	
+	@After
+	public void cleanup() {
+		stateFile.delete();
+	}
+	
+	/**
+	 * Tests that the state of the catalogs, including the versions of their records, is persisted between crawls.
+	 * @throws Exception
+	 */
+	@Test
+	public void testUpdate() throws Exception {
+		
+		final URI catalogURI = new URI("http://localhost/thredds/catalog.xml");
+		final VersionIndex versions = new VersionIndex(16);
+		versions.put("cmip5.output1.dataset", 20110301L);
+		versions.put("cmip5.output2.dataset", 20100101L);
+		final Map<URI, CatalogState> updated = new HashMap<URI, CatalogState>();
+		updated.put(catalogURI, new CatalogState("etag", null, "digest", Collections.singletonList(catalogURI.resolve("sub.xml")), versions));
+		new ThreddsCatalogStateStore(stateFile.getPath()).update(updated, new ArrayList<URI>());
+		
+		final ThreddsCatalogStateStore store = new ThreddsCatalogStateStore(stateFile.getPath());
+		final CatalogState state = store.get(catalogURI);
+		Assert.assertEquals("etag", state.getETag());
+		Assert.assertNull(state.getLastModified());
+		Assert.assertEquals("[http://localhost/thredds/sub.xml]", state.getCatalogRefs().toString());
+		Assert.assertEquals(20110301L, store.getVersions().get("cmip5.output1.dataset", -1L));
+		Assert.assertEquals(20100101L, store.getVersions().get("cmip5.output2.dataset", -1L));
+		Assert.assertEquals(2, store.getVersions().size());
+		
+	}
+	
+	/**
+	 * Tests that state files of the previous format, where versions are keyed by record identifier, are still read.
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoadPreviousFormat() throws Exception {
+		
+		final DataOutputStream out = new DataOutputStream(new FileOutputStream(stateFile));
+		out.writeInt(0x54435331); // "TCS1"
+		out.writeInt(1);
+		out.writeUTF("http://localhost/thredds/catalog.xml");
+		out.writeBoolean(false);
+		out.writeBoolean(false);
+		out.writeUTF("digest");
+		out.writeInt(0);
+		out.writeInt(1);
+		out.writeUTF("cmip5.output1.dataset");
+		out.writeLong(20110301L);
+		out.close();
+		
+		final ThreddsCatalogStateStore store = new ThreddsCatalogStateStore(stateFile.getPath());
+		Assert.assertEquals("digest", store.get(new URI("http://localhost/thredds/catalog.xml")).getDigest());
+		Assert.assertEquals(20110301L, store.getVersions().get("cmip5.output1.dataset", -1L));
+		
+	}
+
+}
@@ -0,0 +1,144 @@
+package esg.harvest.publish.thredds;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.publish.impl.RecordProducerImpl;
+import esg.harvest.utils.HttpClient;
+import esg.harvest.utils.PrefetchPolicy;
+
+/**
+ * Test class for {@link ThreddsCrawler}.
+ */
+public class ThreddsCrawlerTest {
+	
+	private final static ClassPathResource XMLFILE = new ClassPathResource("esg/search/publish/thredds/root_catalog.xml");
+	
+	/**
+	 * Tests crawling of a THREDDS catalogs hierarchy on the calling thread.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSequentialCrawl() throws Exception {
+		
+		this.crawl(new ThreddsCrawler(new ThreddsParserStrategyTopLevelDatasetImpl(), new HttpClient()));
+		
+	}
+	
+	/**
+	 * Tests crawling of a THREDDS catalogs hierarchy on the calling thread, while referenced catalogs are fetched ahead.
+	 * @throws Exception
+	 */
+	@Test
+	public void testPrefetchingCrawl() throws Exception {
+		
+		this.crawl(new ThreddsCrawler(new ThreddsParserStrategyTopLevelDatasetImpl(), new HttpClient(), 1, 1, new ThreddsCatalogStateStore(), new PrefetchPolicy(2, 1024*1024)));
+		
+	}
+	
+	/**
+	 * Tests crawling of a THREDDS catalogs hierarchy with several threads.
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelCrawl() throws Exception {
+		
+		for (int i=0; i<10; i++) {
+			this.crawl(new ThreddsCrawler(new ThreddsParserStrategyTopLevelDatasetImpl(), new HttpClient(), 4, 2, new ThreddsCatalogStateStore(), new PrefetchPolicy()));
+		}
+		
+	}
+	
+	/**
+	 * Tests that unchanged catalogs are skipped by incremental crawls, while their referenced catalogs are still crawled.
+	 * @throws Exception
+	 */
+	@Test
+	public void testIncrementalCrawl() throws Exception {
+		
+		// copy the catalogs hierarchy to a temporary directory
+		final File dir = File.createTempFile("thredds", "");
+		dir.delete();
+		dir.mkdirs();
+		for (final String name : new String[] { "root_catalog.xml", "catalog.xml", "catalog_new_version.xml", "another_catalog.xml" }) {
+			FileCopyUtils.copy(new ClassPathResource("esg/search/publish/thredds/"+name).getFile(), new File(dir, name));
+		}
+		final File stateFile = new File(dir, "state/catalogs.state");
+		final URI uri = new File(dir, "root_catalog.xml").toURI();
+		
+		try {
+			
+			// first crawl harvests all catalogs
+			Map<String, Record> records = this.crawl(this.newIncrementalCrawler(stateFile), uri, true);
+			Assert.assertEquals(12, records.size());
+			Assert.assertTrue(stateFile.exists());
+			
+			// second crawl skips all catalogs
+			records = this.crawl(this.newIncrementalCrawler(stateFile), uri, true);
+			Assert.assertEquals(0, records.size());
+			
+			// a modified catalog is harvested again, except for the records superseded by later versions in unchanged catalogs
+			final FileWriter writer = new FileWriter(new File(dir, "catalog.xml"), true);
+			writer.write("<!-- modified -->");
+			writer.close();
+			records = this.crawl(this.newIncrementalCrawler(stateFile), uri, true);
+			Assert.assertEquals(5, records.size());
+			Assert.assertNull(records.get("pcmdi.ipcc4.UKMO.ukmo_hadgem1.amip.mon.land.run1"));
+			
+			// full crawls do not skip any catalog, and force the next incremental crawl to harvest all catalogs
+			Assert.assertEquals(12, this.crawl(this.newIncrementalCrawler(stateFile), uri, false).size());
+			Assert.assertEquals(12, this.crawl(this.newIncrementalCrawler(stateFile), uri, true).size());
+			
+		} finally {
+			FileSystemUtils.deleteRecursively(dir);
+		}
+		
+	}
+	
+	private ThreddsCrawler newIncrementalCrawler(final File stateFile) {
+		return new ThreddsCrawler(new ThreddsParserStrategyTopLevelDatasetImpl(), new HttpClient(), 1, 1, 
+				                  new ThreddsCatalogStateStore(stateFile.getPath()), new PrefetchPolicy(2, 1024*1024));
+	}
+	
+	private void crawl(final ThreddsCrawler crawler) throws Exception {
+		
+		final Map<String, Record> records = this.crawl(crawler, new URI("file://"+XMLFILE.getFile().getAbsolutePath()), true);
+		
+		// only the latest version of each record is kept
+		Assert.assertEquals(12, records.size());
+		Assert.assertEquals(1, records.get("pcmdi.ipcc4.UKMO.ukmo_hadgem1.amip.mon.land.run2").getVersion());
+		Assert.assertEquals(2, records.get("pcmdi.ipcc4.UKMO.ukmo_hadgem1.amip.mon.land.run1").getVersion());
+		
+	}
+	
+	private Map<String, Record> crawl(final ThreddsCrawler crawler, final URI uri, final boolean incremental) throws Exception {
+		
+		final Map<String, Record> records = Collections.synchronizedMap(new HashMap<String, Record>());
+		final RecordProducerImpl producer = new RecordProducerImpl();
+		producer.subscribe(new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				records.put(record.getId(), record);
+			}
+			public void flush() throws Exception {}
+		});
+		
+		crawler.crawl(new CrawlContext(uri, true, incremental), producer);
+		return records;
+		
+	}
+
+}
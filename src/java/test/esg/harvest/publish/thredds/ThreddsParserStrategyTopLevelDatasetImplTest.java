@@ -0,0 +1,78 @@
+package esg.harvest.publish.thredds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import thredds.catalog.InvCatalog;
+import thredds.catalog.InvCatalogFactory;
+import thredds.catalog.InvDataset;
+import esg.harvest.core.Record;
+import esg.harvest.publish.api.CrawlContext;
+import esg.harvest.publish.api.RecordConsumer;
+import esg.harvest.query.impl.solr.SolrXmlPars;
+
+/**
+ * Test class for {@link ThreddsParserStrategyTopLevelDatasetImpl}.
+ */
+public class ThreddsParserStrategyTopLevelDatasetImplTest {
+	
+	private final static ClassPathResource XMLFILE = new ClassPathResource("esg/search/publish/thredds/catalog.xml");
+	
+	private final ThreddsParserStrategyTopLevelDatasetImpl parser = new ThreddsParserStrategyTopLevelDatasetImpl();
+	
+	/**
+	 * Tests that file records are streamed first, followed by the dataset record holding the total size of the files.
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamingParse() throws Exception {
+		
+		final List<Record> records = new ArrayList<Record>();
+		parser.parseDataset(this.getDataset(), this.newContext(), new RecordConsumer() {
+			public void consume(final Record record) throws Exception {
+				records.add(record);
+			}
+			public void flush() throws Exception {}
+		});
+		
+		Assert.assertEquals(6, records.size());
+		final Record dataset = records.get(records.size()-1);
+		Assert.assertEquals(SolrXmlPars.TYPE_DATASET, dataset.getField(SolrXmlPars.FIELD_TYPE));
+		long size = 0;
+		for (final Record file : records.subList(0, records.size()-1)) {
+			Assert.assertEquals(SolrXmlPars.TYPE_FILE, file.getField(SolrXmlPars.FIELD_TYPE));
+			Assert.assertEquals(dataset.getId(), file.getField(SolrXmlPars.FIELD_PARENT_ID));
+			size += Long.parseLong(file.getField(SolrXmlPars.FIELD_SIZE));
+		}
+		Assert.assertEquals(Long.toString(size), dataset.getField(SolrXmlPars.FIELD_SIZE));
+		
+	}
+	
+	/**
+	 * Tests that the list of records returned by the non-streaming variant starts with the dataset record.
+	 * @throws Exception
+	 */
+	@Test
+	public void testParse() throws Exception {
+		
+		final List<Record> records = parser.parseDataset(this.getDataset(), this.newContext());
+		Assert.assertEquals(6, records.size());
+		Assert.assertEquals(SolrXmlPars.TYPE_DATASET, records.get(0).getField(SolrXmlPars.FIELD_TYPE));
+		
+	}
+	
+	private InvDataset getDataset() throws Exception {
+		final InvCatalog catalog = new InvCatalogFactory("default", true).readXML(XMLFILE.getURI());
+		return catalog.getDatasets().get(0);
+	}
+	
+	private CrawlContext newContext() throws Exception {
+		return new CrawlContext(XMLFILE.getURI(), false, false);
+	}
+
+}
@@ -0,0 +1,77 @@
+package esg.harvest.publish.thredds;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link VersionIndex}.
+ */
+public class VersionIndexTest {
+	
+	/**
+	 * Tests that versions are stored and replaced by identifier, while the index grows.
+	 */
+	@Test
+	public void testPut() {
+		
+		final VersionIndex index = new VersionIndex();
+		for (int i=0; i<10000; i++) {
+			index.put("cmip5.output1.dataset."+i, i);
+		}
+		Assert.assertEquals(10000, index.size());
+		for (int i=0; i<10000; i++) {
+			Assert.assertEquals(i, index.get("cmip5.output1.dataset."+i, -1L));
+		}
+		Assert.assertEquals(-1L, index.get("cmip5.output1.dataset.10000", -1L));
+		Assert.assertFalse(index.contains("cmip5.output1.dataset.10000"));
+		
+		index.put("cmip5.output1.dataset.1", 0L);
+		Assert.assertTrue(index.contains("cmip5.output1.dataset.1"));
+		Assert.assertEquals(0L, index.get("cmip5.output1.dataset.1", -1L));
+		Assert.assertEquals(10000, index.size());
+		
+	}
+	
+	/**
+	 * Tests that only later versions replace the indexed version.
+	 */
+	@Test
+	public void testPutLatest() {
+		
+		final VersionIndex index = new VersionIndex();
+		index.putLatest("id", 20110301L);
+		index.putLatest("id", 20100101L);
+		Assert.assertEquals(20110301L, index.get("id", -1L));
+		index.putLatest("id", 20120101L);
+		Assert.assertEquals(20120101L, index.get("id", -1L));
+		
+	}
+	
+	/**
+	 * Tests that the hashes and versions of an index are exported in the same order, and can be indexed again by hash.
+	 */
+	@Test
+	public void testHashes() {
+		
+		final VersionIndex index = new VersionIndex(4);
+		for (int i=0; i<100; i++) {
+			index.put("id"+i, i);
+		}
+		final long[] hashes = index.getHashes();
+		final long[] versions = index.getVersions();
+		Assert.assertEquals(100, hashes.length);
+		Assert.assertEquals(100, versions.length);
+		
+		final VersionIndex copy = new VersionIndex();
+		for (int i=0; i<hashes.length; i++) {
+			copy.putLatest(hashes[i], versions[i]);
+		}
+		copy.putLatest(VersionIndex.hash("id1"), 0L);
+		for (int i=0; i<100; i++) {
+			Assert.assertEquals(i, copy.get("id"+i, -1L));
+		}
+		
+	}
+
+}
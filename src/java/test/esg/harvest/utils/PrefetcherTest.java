@@ -0,0 +1,76 @@
+package esg.harvest.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link Prefetcher}.
+ */
+public class PrefetcherTest {
+	
+	/**
+	 * Tests that prefetched documents are returned once, and that the prefetch depth is enforced.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDepth() throws Exception {
+		
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Prefetcher prefetcher = new Prefetcher(2, 1000L);
+		try {
+			Assert.assertTrue(prefetcher.prefetch(new URI("a"), fetch("a", latch)));
+			Assert.assertTrue(prefetcher.prefetch(new URI("b"), fetch("b", latch)));
+			Assert.assertFalse(prefetcher.prefetch(new URI("c"), fetch("c", latch)));
+			latch.countDown();
+			
+			Assert.assertEquals("a", new String(prefetcher.take(new URI("a")).getContent()));
+			Assert.assertNull(prefetcher.take(new URI("a")));
+			Assert.assertNull(prefetcher.take(new URI("c")));
+			Assert.assertTrue(prefetcher.prefetch(new URI("c"), fetch("c", latch)));
+			Assert.assertEquals("c", new String(prefetcher.take(new URI("c")).getContent()));
+		} finally {
+			prefetcher.close();
+		}
+		
+	}
+	
+	/**
+	 * Tests that documents exceeding the memory limit, or failing to be retrieved, are not returned.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiscarded() throws Exception {
+		
+		final Prefetcher prefetcher = new Prefetcher(2, 10L);
+		try {
+			prefetcher.prefetch(new URI("a"), fetch("0123456789abc", null));
+			Assert.assertNull(prefetcher.take(new URI("a")));
+			
+			prefetcher.prefetch(new URI("b"), new Callable<HttpClient.ConditionalResponse>() {
+				public HttpClient.ConditionalResponse call() throws Exception {
+					throw new IOException("Connection refused");
+				}
+			});
+			Assert.assertNull(prefetcher.take(new URI("b")));
+		} finally {
+			prefetcher.close();
+		}
+		
+	}
+	
+	private static Callable<HttpClient.ConditionalResponse> fetch(final String content, final CountDownLatch latch) {
+		return new Callable<HttpClient.ConditionalResponse>() {
+			public HttpClient.ConditionalResponse call() throws Exception {
+				if (latch!=null) latch.await();
+				return new HttpClient.ConditionalResponse(content.getBytes("UTF-8"), null, null);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,63 @@
+package esg.harvest.utils;
+
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link RetryPolicy}.
+ */
+public class RetryPolicyTest {
+	
+	/**
+	 * Tests that only transient errors are retried, up to the maximum number of attempts.
+	 */
+	@Test
+	public void testIsRetryRequired() {
+		
+		final RetryPolicy policy = new RetryPolicy(3, 100L, 1000L);
+		Assert.assertTrue(policy.isRetryRequired(1, new IOException("Connection reset")));
+		Assert.assertTrue(policy.isRetryRequired(2, new HttpStatusException("Service Unavailable", 503)));
+		Assert.assertTrue(policy.isRetryRequired(1, new HttpStatusException("Too Many Requests", 429)));
+		Assert.assertFalse(policy.isRetryRequired(3, new IOException("Connection reset")));
+		Assert.assertFalse(policy.isRetryRequired(1, new HttpStatusException("Bad Request", 400)));
+		Assert.assertFalse(policy.isRetryRequired(1, new IllegalArgumentException()));
+		
+		Assert.assertFalse(new RetryPolicy().isRetryRequired(1, new IOException()));
+		
+	}
+	
+	/**
+	 * Tests that the delay grows exponentially within the configured bounds.
+	 */
+	@Test
+	public void testGetDelay() {
+		
+		final RetryPolicy policy = new RetryPolicy(10, 100L, 1000L);
+		for (int i=0; i<20; i++) {
+			final long first = policy.getDelay(1);
+			Assert.assertTrue(first>=50 && first<=100);
+			final long third = policy.getDelay(3);
+			Assert.assertTrue(third>=200 && third<=400);
+			final long last = policy.getDelay(9);
+			Assert.assertTrue(last>=500 && last<=1000);
+		}
+		
+	}
+	
+	/**
+	 * Tests that the delay requested by the server is honoured, within the configured maximum.
+	 */
+	@Test
+	public void testGetRetryAfterDelay() {
+		
+		final RetryPolicy policy = new RetryPolicy(10, 100L, 1000L);
+		Assert.assertEquals(0L, policy.getDelay(1, new HttpStatusException("Service Unavailable", 503, 0L)));
+		Assert.assertEquals(500L, policy.getDelay(1, new HttpStatusException("Service Unavailable", 503, 500L)));
+		Assert.assertEquals(1000L, policy.getDelay(1, new HttpStatusException("Service Unavailable", 503, 3600000L)));
+		
+	}
+
+}
@@ -0,0 +1,51 @@
+package esg.harvest.utils;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import esg.harvest.core.CompactRecord;
+import esg.harvest.core.Record;
+
+/**
+ * Test class for {@link ValueCache}.
+ */
+public class ValueCacheTest {
+	
+	/**
+	 * Tests that equal values are replaced by the first cached instance, and that the least recently used values are evicted.
+	 */
+	@Test
+	public void testGet() {
+		
+		final ValueCache cache = new ValueCache(2);
+		final String a = new String("a");
+		Assert.assertSame(a, cache.get(a));
+		Assert.assertSame(a, cache.get(new String("a")));
+		cache.get("b");
+		cache.get(new String("a"));
+		cache.get("c"); // evicts "b"
+		Assert.assertSame(a, cache.get(new String("a")));
+		final String b = new String("b");
+		Assert.assertSame(b, cache.get(b));
+		Assert.assertEquals(3, cache.getHits());
+		Assert.assertNull(cache.get(null));
+		
+	}
+	
+	/**
+	 * Tests that records created with the same cache share their repeated values.
+	 */
+	@Test
+	public void testSharedValues() {
+		
+		final ValueCache cache = new ValueCache(ValueCache.DEFAULT_SIZE);
+		final Record record1 = new CompactRecord("1", cache);
+		final Record record2 = new CompactRecord("2", cache);
+		record1.addField("project", new String("CMIP5"));
+		record2.addField("project", new String("CMIP5"));
+		Assert.assertSame(record1.getField("project"), record2.getField("project"));
+		
+	}
+
+}